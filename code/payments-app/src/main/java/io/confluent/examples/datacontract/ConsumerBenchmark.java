@@ -0,0 +1,358 @@
+package io.confluent.examples.datacontract;
+
+import io.confluent.examples.datacontract.datagen.SalesDataGen;
+import io.confluent.examples.datacontract.pojo.avro.Sale;
+import io.confluent.examples.datacontract.utils.ClientsUtils;
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.rest.entities.requests.RegisterSchemaRequest;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.confluent.kafka.schemaregistry.utils.JacksonMapper;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.log4j.Logger;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures what reading {@code payments} costs a consumer: records per second and CPU time per record for each
+ * scenario in {@code bench.scenarios}. A scenario is a decoder, {@code raw} for the bytes only, {@code generic}
+ * for {@code KafkaAvroDeserializer} into a {@code GenericRecord} or {@code specific} into a {@link Sale}, with a
+ * {@code +decrypt} suffix to run the {@code pci_encrypt} rule on {@code cc_number}. Without the suffix the rule
+ * executors are not loaded, and the rule is skipped as its read side fails with {@code NONE}.
+ *
+ * <p>Every scenario reads the same records: the partitions of the topic from the beginning up to the end offsets
+ * taken when it starts, or the first {@code bench.max.records} spread over the partitions. The partitions are
+ * assigned round robin to {@code bench.threads} consumers, one per thread. Each scenario runs
+ * {@code bench.rounds} times and only the last round is reported, the ones before warm up the JIT and the
+ * Schema Registry caches.
+ *
+ * <p>With {@code bench.load.records}, the benchmark first writes that many valid payments with the
+ * {@code ProducerApp} configuration. With a {@code mock://} Schema Registry it also registers the payments schema
+ * with the rules in {@code bench.schema.rules.file}, so the whole benchmark runs against a local KMS.
+ */
+public class ConsumerBenchmark {
+
+    private static final Logger logger = Logger.getLogger(ConsumerBenchmark.class);
+
+    enum Decoder {
+        RAW, GENERIC, SPECIFIC
+    }
+
+    static final class Scenario {
+        final String name;
+        final Decoder decoder;
+        final boolean decrypt;
+
+        Scenario(String name) {
+            this.name = name;
+            String[] parts = name.split("\\+");
+            this.decoder = Decoder.valueOf(parts[0].trim().toUpperCase());
+            if (parts.length > 2 || (parts.length == 2 && !parts[1].trim().equals("decrypt"))) {
+                throw new IllegalArgumentException("Unknown benchmark scenario: " + name);
+            }
+            this.decrypt = parts.length == 2;
+            if (decrypt && decoder == Decoder.RAW) {
+                throw new IllegalArgumentException("The raw scenario does not decode, so it cannot decrypt");
+            }
+        }
+    }
+
+    private static final class Result {
+        final AtomicLong records = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        // Records whose cc_number was read as a card number, not as ciphertext
+        final AtomicLong clearCards = new AtomicLong();
+        final AtomicLong consumerCpuNanos = new AtomicLong();
+        // Sum of the fields read, so the decoding cannot be optimized away
+        final AtomicLong checksum = new AtomicLong();
+        int threads;
+        long elapsedNanos;
+        long processCpuNanos;
+    }
+
+    private final String propertiesFile;
+    private final Properties props;
+    private final String topic;
+    private final List<Scenario> scenarios = new ArrayList<>();
+    private final int threads;
+    private final long maxRecords;
+    private final int rounds;
+
+    ConsumerBenchmark(String propertiesFile, Properties props) {
+        this.propertiesFile = propertiesFile;
+        this.props = props;
+        this.topic = props.getProperty("bench.topic", "payments");
+        for (String scenario : props.getProperty("bench.scenarios",
+                "raw,generic,specific,generic+decrypt,specific+decrypt").split(",")) {
+            scenarios.add(new Scenario(scenario.trim()));
+        }
+        this.threads = Integer.parseInt(props.getProperty("bench.threads", "0"));
+        this.maxRecords = Long.parseLong(props.getProperty("bench.max.records", "0"));
+        this.rounds = Math.max(1, Integer.parseInt(props.getProperty("bench.rounds", "2")));
+    }
+
+    void run() throws Exception {
+        long loadRecords = Long.parseLong(props.getProperty("bench.load.records", "0"));
+        if (loadRecords > 0) {
+            load(loadRecords);
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-18s %7s %10s %12s %8s %14s %15s %8s", "scenario", "threads", "records",
+                "records/s", "MB/s", "process us/rec", "consumer us/rec", "clear cc"));
+        for (Scenario scenario : scenarios) {
+            Result result = null;
+            try {
+                for (int round = 1; round <= rounds; round++) {
+                    result = measure(scenario);
+                    logger.info(String.format("%s round %d: %d records in %.2f s", scenario.name, round,
+                            result.records.get(), result.elapsedNanos / 1e9));
+                }
+            } catch (Exception e) {
+                logger.error("Scenario " + scenario.name + " failed: ", e);
+                lines.add(String.format("%-18s failed: %s", scenario.name, e));
+                continue;
+            }
+            long records = Math.max(1, result.records.get());
+            double seconds = result.elapsedNanos / 1e9;
+            lines.add(String.format("%-18s %7d %10d %12.0f %8.1f %14.2f %15.2f %8s", scenario.name,
+                    result.threads, result.records.get(), result.records.get() / seconds,
+                    result.bytes.get() / seconds / (1 << 20), result.processCpuNanos / 1e3 / records,
+                    result.consumerCpuNanos.get() / 1e3 / records, scenario.decoder == Decoder.RAW ? "-"
+                            : String.format("%.1f%%", 100.0 * result.clearCards.get() / records)));
+        }
+        logger.info("Consumer benchmark of " + topic + System.lineSeparator()
+                + String.join(System.lineSeparator(), lines));
+    }
+
+    /**
+     * Reads the records of the run once with the decoder of the scenario.
+     */
+    private Result measure(Scenario scenario) throws Exception {
+        Map<TopicPartition, Long> start;
+        Map<TopicPartition, Long> stop = new HashMap<>();
+        List<TopicPartition> partitions = new ArrayList<>();
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerConfig(null, "bench-offsets"))) {
+            for (PartitionInfo partition : consumer.partitionsFor(topic)) {
+                partitions.add(new TopicPartition(topic, partition.partition()));
+            }
+            start = consumer.beginningOffsets(partitions);
+            Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+            long perPartition = maxRecords > 0 ? (maxRecords + partitions.size() - 1) / partitions.size() : Long.MAX_VALUE;
+            for (TopicPartition partition : partitions) {
+                stop.put(partition, Math.min(end.get(partition), start.get(partition) + perPartition));
+            }
+        }
+
+        int threadCount = threads > 0 ? Math.min(threads, partitions.size()) : partitions.size();
+        List<List<TopicPartition>> assignments = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            assignments.add(new ArrayList<>());
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            assignments.get(i % threadCount).add(partitions.get(i));
+        }
+
+        Result result = new Result();
+        result.threads = threadCount;
+        CountDownLatch ready = new CountDownLatch(threadCount);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService exec = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> consumers = new ArrayList<>();
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                List<TopicPartition> assignment = assignments.get(i);
+                String clientId = "bench-" + scenario.name.replace('+', '-') + "-" + i;
+                consumers.add(exec.submit(() -> {
+                    consume(consumerConfig(scenario, clientId), assignment, stop, result, ready, go);
+                    return null;
+                }));
+            }
+            ready.await();
+            com.sun.management.OperatingSystemMXBean os =
+                    (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            long cpuStart = os.getProcessCpuTime();
+            long startNanos = System.nanoTime();
+            go.countDown();
+            for (Future<?> consumer : consumers) {
+                consumer.get();
+            }
+            result.elapsedNanos = System.nanoTime() - startNanos;
+            result.processCpuNanos = os.getProcessCpuTime() - cpuStart;
+        } finally {
+            // Releases the other consumers when one of them failed to start
+            go.countDown();
+            exec.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Reads the assigned partitions from the beginning up to their stop offsets. The consumer and its
+     * deserializer are built before the start, so the measurement covers fetching and decoding only.
+     */
+    private void consume(Properties config, List<TopicPartition> assignment, Map<TopicPartition, Long> stop,
+                         Result result, CountDownLatch ready, CountDownLatch go) throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        KafkaConsumer<byte[], Object> consumer;
+        try {
+            consumer = new KafkaConsumer<>(config);
+        } finally {
+            ready.countDown();
+        }
+        try {
+            consumer.assign(assignment);
+            consumer.seekToBeginning(assignment);
+            List<TopicPartition> remaining = new ArrayList<>(assignment);
+            go.await();
+            long cpuStart = threadBean.getCurrentThreadCpuTime();
+            long records = 0, bytes = 0, clearCards = 0, checksum = 0;
+            while (!remaining.isEmpty()) {
+                ConsumerRecords<byte[], Object> batch = consumer.poll(Duration.ofMillis(500));
+                for (ConsumerRecord<byte[], Object> record : batch) {
+                    if (record.offset() >= stop.get(new TopicPartition(record.topic(), record.partition()))) {
+                        continue;
+                    }
+                    records++;
+                    bytes += Math.max(0, record.serializedValueSize());
+                    Object value = record.value();
+                    // Read the fields, so the decoded records are used as a downstream consumer would
+                    if (value instanceof Sale) {
+                        Sale sale = (Sale) value;
+                        checksum += sale.getOrderId();
+                        clearCards += isClearCardNumber(sale.getCcNumber()) ? 1 : 0;
+                    } else if (value instanceof GenericRecord) {
+                        GenericRecord sale = (GenericRecord) value;
+                        checksum += (Integer) sale.get("order_id");
+                        clearCards += isClearCardNumber((CharSequence) sale.get("cc_number")) ? 1 : 0;
+                    } else if (value instanceof byte[]) {
+                        checksum += ((byte[]) value).length;
+                    }
+                }
+                // Checked on the positions, not the records, as transaction markers and compaction leave gaps
+                for (Iterator<TopicPartition> partitions = remaining.iterator(); partitions.hasNext(); ) {
+                    TopicPartition partition = partitions.next();
+                    if (consumer.position(partition) >= stop.get(partition)) {
+                        consumer.pause(Collections.singletonList(partition));
+                        partitions.remove();
+                    }
+                }
+            }
+            result.consumerCpuNanos.addAndGet(threadBean.getCurrentThreadCpuTime() - cpuStart);
+            result.records.addAndGet(records);
+            result.bytes.addAndGet(bytes);
+            result.clearCards.addAndGet(clearCards);
+            result.checksum.addAndGet(checksum);
+        } finally {
+            consumer.close(Duration.ZERO);
+        }
+    }
+
+    /**
+     * Whether a card number is in the clear, the generated {@code dddd-dddd-dddd-dddd}, and not the base64
+     * ciphertext of the encryption rule.
+     */
+    static boolean isClearCardNumber(CharSequence cardNumber) {
+        if (cardNumber == null) {
+            return false;
+        }
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if ((c < '0' || c > '9') && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Properties consumerConfig(Scenario scenario, String clientId) {
+        Properties config = new Properties();
+        config.putAll(props);
+        // Partitions are assigned, nothing is committed
+        config.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        if (scenario == null || scenario.decoder == Decoder.RAW) {
+            config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+            return config;
+        }
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaAvroDeserializer.class);
+        config.put("specific.avro.reader", String.valueOf(scenario.decoder == Decoder.SPECIFIC));
+        if (!scenario.decrypt) {
+            // Without the executors found on the classpath, the encryption rule has nothing to run it
+            config.put("rule.service.loader.enable", "false");
+        }
+        return config;
+    }
+
+    /**
+     * Writes {@code records} valid payments to the topic, after registering the payments schema and its rules
+     * when the Schema Registry is a mock.
+     */
+    private void load(long records) throws Exception {
+        ProducerApp producerApp = new ProducerApp(propertiesFile, "Consumer_Benchmark_Loader");
+        Properties producerConfig = producerApp.getProducerConfig();
+        String url = producerConfig.getProperty(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, "");
+        String rulesFile = props.getProperty("bench.schema.rules.file");
+        if (url.startsWith("mock://") && rulesFile != null) {
+            RegisterSchemaRequest rules;
+            try (InputStream in = new FileInputStream(rulesFile)) {
+                rules = JacksonMapper.INSTANCE.readValue(in, RegisterSchemaRequest.class);
+            }
+            MockSchemaRegistry.getClientForScope(url.substring("mock://".length()))
+                    .register(topic + "-value", new AvroSchema(Sale.getClassSchema().toString())
+                            .copy(rules.getMetadata(), rules.getRuleSet()));
+        }
+        ClientsUtils.createTopicIfNotExists(producerConfig, topic);
+
+        AtomicLong failed = new AtomicLong();
+        long startNanos = System.nanoTime();
+        try (KafkaProducer<String, Object> producer = new KafkaProducer<>(producerConfig)) {
+            for (long i = 0; i < records; i++) {
+                producer.send(new ProducerRecord<>(topic, SalesDataGen.getSale(false, "Consumer_Benchmark_Loader")),
+                        (metadata, e) -> {
+                            if (e != null && failed.getAndIncrement() == 0) {
+                                logger.error("Loading " + topic + " failed: ", e);
+                            }
+                        });
+            }
+            producer.flush();
+        }
+        logger.info(String.format("Loaded %d payments into %s in %.1f s, %d failed", records, topic,
+                (System.nanoTime() - startNanos) / 1e9, failed.get()));
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            logger.error("Provide the propertiesFile as argument");
+            System.exit(1);
+        }
+        new ConsumerBenchmark(args[0], ClientsUtils.loadConfig(args[0])).run();
+    }
+}
@@ -0,0 +1,125 @@
+package io.confluent.examples.datacontract;
+
+import io.confluent.examples.datacontract.datagen.OrderSequenceSource;
+import io.confluent.examples.datacontract.datagen.SalesDataGen;
+import io.confluent.examples.datacontract.datagen.StoreNames;
+import io.confluent.examples.datacontract.utils.ClientsUtils;
+import io.confluent.examples.datacontract.utils.LatencyHistogram;
+import io.confluent.examples.datacontract.utils.WorkloadConfig;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ProducerApp} under the control of a {@link LoadCoordinator} at {@code agent.coordinator}
+ * ({@code host:port}). The agent produces with the order id range, rate and start time it is assigned, then
+ * sends back the send latency histogram of its threads.
+ */
+class LoadAgent {
+
+    private static final Logger logger = Logger.getLogger(LoadAgent.class);
+
+    private final String propertiesFile;
+    private final Properties config;
+    private final int threads;
+    private final String name;
+
+    LoadAgent(String propertiesFile, Properties config, int threads) throws IOException {
+        this.propertiesFile = propertiesFile;
+        this.config = config;
+        this.threads = threads;
+        String defaultName = InetAddress.getLocalHost().getHostName() + "-" + Long.toHexString(System.nanoTime() & 0xffff);
+        this.name = config.getProperty("agent.name", defaultName).trim().replaceAll("\\s+", "-");
+        if (OrderSequenceSource.isEnabled(config)) {
+            logger.warn("join.sequence.file is set: order ids come from the sequence file, not from the assigned range");
+        }
+    }
+
+    static boolean isEnabled(Properties props) {
+        return props.getProperty("agent.coordinator") != null;
+    }
+
+    void run() throws IOException, InterruptedException {
+        String coordinator = config.getProperty("agent.coordinator");
+        int separator = coordinator.lastIndexOf(':');
+        String host = coordinator.substring(0, separator);
+        int port = Integer.parseInt(coordinator.substring(separator + 1));
+
+        try (Socket socket = new Socket(host, port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            out.println("HELLO " + name + " " + threads);
+            logger.info("Agent " + name + " connected to " + coordinator);
+
+            String[] assignment = null;
+            String line;
+            while (assignment == null && (line = in.readLine()) != null) {
+                String[] fields = line.trim().split(" ");
+                if (fields[0].equals("PING")) {
+                    out.println("PONG " + fields[1]);
+                } else if (fields[0].equals("ASSIGN")) {
+                    assignment = fields;
+                }
+            }
+            long received = System.nanoTime();
+            if (assignment == null) {
+                throw new EOFException("Coordinator closed the connection before assigning work");
+            }
+            int firstOrderId = Integer.parseInt(assignment[2]);
+            int lastOrderId = Integer.parseInt(assignment[3]);
+            double recordsPerSecond = Double.parseDouble(assignment[4]);
+            long startInMillis = Long.parseLong(assignment[5]);
+            long durationSeconds = Long.parseLong(assignment[6]);
+            int firstStore = Integer.parseInt(assignment[7]);
+            logger.info(String.format("Agent %s: order ids %d..%d, %.0f records/s for %d s, starting in %d ms",
+                    name, firstOrderId, lastOrderId, recordsPerSecond, durationSeconds, startInMillis));
+
+            SalesDataGen.setOrderIdRange(firstOrderId, lastOrderId);
+            Properties agentConfig = new Properties();
+            agentConfig.putAll(config);
+            agentConfig.setProperty("producer.records.per.second", String.valueOf(recordsPerSecond));
+            agentConfig.setProperty("producer.threads", String.valueOf(threads));
+            WorkloadConfig workload = new WorkloadConfig(agentConfig);
+
+            // Client ids stay unique across agents: the coordinator hands out consecutive store indexes
+            List<ProducerApp> producers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                producers.add(new ProducerApp(propertiesFile, "Pos_Store_" + StoreNames.get(firstStore + i), workload));
+            }
+
+            long startAt = received + TimeUnit.MILLISECONDS.toNanos(startInMillis);
+            long wait = startAt - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            long start = System.nanoTime();
+            ExecutorService exec = Executors.newFixedThreadPool(threads);
+            for (ProducerApp producer : producers) {
+                exec.submit(producer);
+            }
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            for (ProducerApp producer : producers) {
+                producer.stop();
+            }
+            exec.shutdown();
+            exec.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            LatencyHistogram latency = new LatencyHistogram();
+            for (ProducerApp producer : producers) {
+                latency.add(producer.getSendLatency());
+            }
+            out.println("RESULT " + latency.getCount() + " " + elapsedMillis + " " + latency.encode());
+            logger.info(String.format("Agent %s: %d records in %d ms", name, latency.getCount(), elapsedMillis));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package io.confluent.examples.datacontract;
+
+import io.confluent.examples.datacontract.datagen.StoreNames;
+import io.confluent.examples.datacontract.utils.ClientsUtils;
+import io.confluent.examples.datacontract.utils.LatencyHistogram;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one load test over several {@code ProducerApp} agents, usually on different machines. The coordinator
+ * waits on {@code coordinator.port} for {@code coordinator.agents} agents, then gives each a disjoint range of
+ * order ids, an equal share of {@code coordinator.records.per.second}, a common start time and the index of its
+ * first store name. Store names follow on from agent to agent by their thread counts, so they stay unique. When the agents
+ * finish after {@code coordinator.duration.seconds} it merges their latency histograms into one report.
+ *
+ * <p>The control channel is a line-based TCP protocol:
+ * <pre>
+ * agent:       HELLO name threads
+ * coordinator: PING nanos                  agent: PONG nanos
+ * coordinator: ASSIGN index firstOrderId lastOrderId recordsPerSecond startInMillis durationSeconds firstStore
+ * agent:       RESULT records elapsedMillis histogram
+ * </pre>
+ * The start is sent as a delay, shortened by half the measured round trip of each agent, so agents start together
+ * without relying on synchronized clocks.
+ */
+public class LoadCoordinator {
+
+    private static final Logger logger = Logger.getLogger(LoadCoordinator.class);
+
+    private static final int PINGS = 5;
+
+    private static final class Agent implements Closeable {
+        final Socket socket;
+        final BufferedReader in;
+        final PrintWriter out;
+        String name;
+        int threads;
+        long roundTripNanos = Long.MAX_VALUE;
+        int firstOrderId;
+        int lastOrderId;
+        int firstStore;
+        long records;
+        long elapsedMillis;
+        LatencyHistogram latency;
+
+        Agent(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        }
+
+        String[] expect(String command) throws IOException {
+            String line = in.readLine();
+            if (line == null) {
+                throw new EOFException("Agent " + name + " disconnected");
+            }
+            String[] fields = line.trim().split(" ");
+            if (!fields[0].equals(command)) {
+                throw new IOException("Expected " + command + " from agent " + name + ", got: " + line);
+            }
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private final int port;
+    private final int expectedAgents;
+    private final double recordsPerSecond;
+    private final long durationSeconds;
+    private final long startDelayMillis;
+    private final int firstOrderId;
+    private final long orderIdsPerAgent;
+    private final int joinTimeoutMillis;
+    private final int firstStore;
+
+    LoadCoordinator(Properties props) {
+        this.port = Integer.parseInt(props.getProperty("coordinator.port", "7070"));
+        this.expectedAgents = Integer.parseInt(props.getProperty("coordinator.agents", "2"));
+        this.recordsPerSecond = Double.parseDouble(props.getProperty("coordinator.records.per.second", "1000"));
+        this.durationSeconds = Long.parseLong(props.getProperty("coordinator.duration.seconds", "60"));
+        this.startDelayMillis = Long.parseLong(props.getProperty("coordinator.start.delay.ms", "5000"));
+        this.firstOrderId = Integer.parseInt(props.getProperty("coordinator.order.id.start", "2500"));
+        // Enough ids for twice the rate share over the whole run, so a range does not run out
+        long defaultIdsPerAgent = (long) Math.ceil(2 * recordsPerSecond / expectedAgents * durationSeconds) + 10_000;
+        this.orderIdsPerAgent = Long.parseLong(props.getProperty("coordinator.order.ids.per.agent", String.valueOf(defaultIdsPerAgent)));
+        this.joinTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(Long.parseLong(props.getProperty("coordinator.join.timeout.seconds", "600")));
+        this.firstStore = StoreNames.firstIndex(props);
+        if (firstOrderId + orderIdsPerAgent * expectedAgents - 1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The order id ranges of " + expectedAgents + " agents with "
+                    + orderIdsPerAgent + " ids each do not fit in an int");
+        }
+    }
+
+    void run() throws IOException {
+        List<Agent> agents = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            server.setSoTimeout(joinTimeoutMillis);
+            logger.info("Waiting for " + expectedAgents + " agents on port " + port);
+            while (agents.size() < expectedAgents) {
+                Agent agent;
+                try {
+                    agent = new Agent(server.accept());
+                } catch (SocketTimeoutException e) {
+                    throw new IOException("Only " + agents.size() + " of " + expectedAgents + " agents joined", e);
+                }
+                agents.add(agent);
+                String[] hello = agent.expect("HELLO");
+                agent.name = hello[1];
+                agent.threads = Integer.parseInt(hello[2]);
+                logger.info("Agent " + agent.name + " joined with " + agent.threads + " threads ("
+                        + agents.size() + "/" + expectedAgents + ")");
+            }
+
+            for (Agent agent : agents) {
+                for (int i = 0; i < PINGS; i++) {
+                    long sent = System.nanoTime();
+                    agent.out.println("PING " + sent);
+                    agent.expect("PONG");
+                    agent.roundTripNanos = Math.min(agent.roundTripNanos, System.nanoTime() - sent);
+                }
+            }
+
+            double share = recordsPerSecond / agents.size();
+            long assigned = System.nanoTime();
+            int nextStore = firstStore;
+            for (int i = 0; i < agents.size(); i++) {
+                Agent agent = agents.get(i);
+                agent.firstOrderId = (int) (firstOrderId + i * orderIdsPerAgent);
+                agent.lastOrderId = (int) (agent.firstOrderId + orderIdsPerAgent - 1);
+                agent.firstStore = nextStore;
+                nextStore += agent.threads;
+                long startInMillis = startDelayMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - assigned)
+                        - TimeUnit.NANOSECONDS.toMillis(agent.roundTripNanos / 2);
+                agent.out.println("ASSIGN " + i + " " + agent.firstOrderId + " " + agent.lastOrderId + " " + share
+                        + " " + startInMillis + " " + durationSeconds + " " + agent.firstStore);
+                agent.socket.setSoTimeout((int) (startDelayMillis + TimeUnit.SECONDS.toMillis(durationSeconds + 120)));
+            }
+            logger.info(String.format("Load test starts in %d ms: %.0f records/s for %d s over %d agents",
+                    startDelayMillis, recordsPerSecond, durationSeconds, agents.size()));
+
+            for (Agent agent : agents) {
+                String[] result = agent.expect("RESULT");
+                agent.records = Long.parseLong(result[1]);
+                agent.elapsedMillis = Long.parseLong(result[2]);
+                agent.latency = LatencyHistogram.decode(result[3]);
+                logger.info("Agent " + agent.name + " finished");
+            }
+            printReport(agents);
+        } finally {
+            for (Agent agent : agents) {
+                agent.close();
+            }
+        }
+    }
+
+    private void printReport(List<Agent> agents) {
+        LatencyHistogram total = new LatencyHistogram();
+        long records = 0;
+        long elapsedMillis = 0;
+        System.out.println();
+        System.out.println(String.format("Distributed load test: %d agents, target %.0f records/s for %d s",
+                agents.size(), recordsPerSecond, durationSeconds));
+        System.out.println(String.format("%-24s %23s %10s %10s %9s %9s %9s",
+                "agent", "order ids", "records", "records/s", "p50 ms", "p99 ms", "max ms"));
+        for (Agent agent : agents) {
+            System.out.println(format(agent.name, agent.firstOrderId + ".." + agent.lastOrderId, agent.records,
+                    agent.elapsedMillis, agent.latency));
+            total.add(agent.latency);
+            records += agent.records;
+            elapsedMillis = Math.max(elapsedMillis, agent.elapsedMillis);
+        }
+        System.out.println(format("total", "", records, elapsedMillis, total));
+        System.out.println(String.format("p99.9 %.2f ms", total.getPercentile(99.9) / 1e6));
+    }
+
+    private static String format(String name, String orderIds, long records, long elapsedMillis, LatencyHistogram latency) {
+        return String.format("%-24s %23s %10d %10.0f %9.2f %9.2f %9.2f", name, orderIds, records,
+                elapsedMillis > 0 ? records * 1000.0 / elapsedMillis : 0,
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            logger.error("Provide the propertiesFile as argument");
+            System.exit(1);
+        }
+        new LoadCoordinator(ClientsUtils.loadConfig(args[0])).run();
+    }
+}
@@ -1,29 +1,62 @@
 package io.confluent.examples.datacontract;
 
-import com.github.javafaker.Faker;
 import io.confluent.examples.datacontract.datagen.SalesDataGen;
+import io.confluent.examples.datacontract.datagen.StoreNames;
+import io.confluent.examples.datacontract.jfr.AckEvent;
+import io.confluent.examples.datacontract.jfr.RecordedAvroSerializer;
+import io.confluent.examples.datacontract.jfr.SendEvent;
+import io.confluent.examples.datacontract.pojo.avro.Sale;
+import io.confluent.examples.datacontract.tracing.TraceHeaders;
 import io.confluent.examples.datacontract.utils.ClientsUtils;
+import io.confluent.examples.datacontract.utils.LatencyHistogram;
+import io.confluent.examples.datacontract.utils.WorkloadConfig;
 import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
 import org.apache.kafka.clients.producer.*;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class ProducerApp implements Runnable {
 
     private static final Logger logger = Logger.getLogger(ProducerApp.class);
 
+    // Defaults of the live workload settings, see WorkloadConfig
+    private static final double DEFAULT_DUPLICATE_RATIO = 0.1;
+    private static final double DEFAULT_INVALID_RATIO = 0.2;
+    private static final long DEFAULT_INTERVAL_MS = 1000;
+
     private Properties props;
     private String topic, dlq;
+    private WorkloadConfig workload;
+    private volatile boolean running = true;
+    private boolean trace;
+    // Print every payment and its offset; off for throughput measurements
+    private boolean printRecords = true;
+
+    // Time from send to acknowledgement of every record, including duplicates
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
 
     ProducerApp(
             String propertiesFile,
             String clientId) {
+        this(propertiesFile, clientId, null);
+    }
+
+    ProducerApp(
+            String propertiesFile,
+            String clientId,
+            WorkloadConfig workload) {
         try {
             props = ClientsUtils.loadConfig(propertiesFile);
             if (clientId != null) {
@@ -37,7 +70,13 @@ public class ProducerApp implements Runnable {
 //            props.put(AbstractKafkaSchemaSerDeConfig.LATEST_CACHE_TTL, 1000);
             props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
 
-            props.put("value.serializer", "io.confluent.kafka.serializers.KafkaAvroSerializer");
+            // KafkaAvroSerializer that records the serialization and rule execution time as JFR events
+            props.put("value.serializer", RecordedAvroSerializer.class.getName());
+
+            SalesDataGen.configure(props);
+            this.trace = TraceHeaders.isEnabled(props);
+            this.printRecords = Boolean.parseBoolean(props.getProperty("producer.print.records", "true"));
+            this.workload = workload != null ? workload : new WorkloadConfig(props);
         } catch (Exception e) {
             e.printStackTrace();
             logger.error("Error in ProducerApp.constructor: " + e);
@@ -48,55 +87,46 @@ public class ProducerApp implements Runnable {
     public void run() {
         topic = "payments";
         Random random = new Random();
+        long durationMs = Long.parseLong(props.getProperty("run.duration.seconds", "0")) * 1000;
+        long deadline = System.currentTimeMillis() + durationMs;
         try (Producer<String, Object> producer = new KafkaProducer<>(props)) {
-            int counter = 0;
+            Metric bufferWait = findMetric(producer, "bufferpool-wait-time-ns-total");
+            long nextSend = System.nanoTime();
             // boolean exit = false;
-            while (true) {
+            while (running && (durationMs == 0 || System.currentTimeMillis() < deadline)) {
                 // Send the record
                 try {
-                    Object sales;
+                    nextSend = pace(nextSend);
+                    Object sales = nextSale(random);
 
-                    sales = SalesDataGen.getSale(counter);
-
-                    if (counter == 5) {
-                        counter = 0;
+                    if (printRecords) {
+                        System.out.println("------------------------- ");
                     }
-                    System.out.println("------------------------- ");
 
                     // Create a sales record
-                    ProducerRecord record = new ProducerRecord<>(topic, sales);
-                    producer.send(record, new Callback() {
-                        public void onCompletion(RecordMetadata metadata, Exception e) {
-                            if(e != null) {
-                                e.printStackTrace();
-                            } else {
-                                System.out.println("The offset of the order record we just sent is: " + metadata.offset());
-                            }
-                        }
-                    }).get();
-                    System.out.println(sales);
+                    ProducerRecord<String, Object> record = new ProducerRecord<>(topic, sales);
+                    if (trace) {
+                        // A duplicate is sent with the same headers, so it belongs to the same trace
+                        TraceHeaders.stamp(record.headers());
+                    }
+                    send(producer, record, bufferWait);
+                    if (printRecords) {
+                        System.out.println(sales);
+                    }
                     
-                    // 10% of the time generate a duplicate
-                    if (random.nextInt(10) == 0) {     
-                        producer.send(record, new Callback() {
-                            public void onCompletion(RecordMetadata metadata, Exception e) {
-                                if(e != null) {
-                                    e.printStackTrace();
-                                } else {
-                                    System.out.println("The offset of the order record we just sent is: " + metadata.offset());
-                                }
-                            }
-                        }).get(); 
-                        System.out.println("Duplicate sale event produced " + sales);
+                    // Some of the time generate a duplicate, 10% by default
+                    if (isDuplicate(random)) {
+                        send(producer, record, bufferWait);
+                        if (printRecords) {
+                            System.out.println("Duplicate sale event produced " + sales);
+                        }
                     }       
-                    
-                    counter++;
-                    
-                    Thread.sleep(1000);
                     } catch (Exception e) {
-                        // Catch and log the serialization error but continue to next record
-                        // logger.error("Serialization error in ProducerApp.run: ", e);
-                        e.printStackTrace();
+                        // Invalid payments fail the data quality rule and go to the DLQ: log and continue to the
+                        // next record, per record like the payments themselves
+                        if (printRecords) {
+                            logger.warn("Payment not sent: " + e);
+                        }
                         continue;
                     }
             }
@@ -106,6 +136,131 @@ public class ProducerApp implements Runnable {
             
         }
 
+        /**
+         * Sends a record and waits for its acknowledgement. The call of {@code send} is recorded as a
+         * {@link SendEvent}, and the whole round trip up to the acknowledgement as an {@link AckEvent}.
+         */
+        private void send(Producer<String, Object> producer, ProducerRecord<String, Object> record, Metric bufferWait)
+                throws Exception {
+            AckEvent ackEvent = new AckEvent();
+            SendEvent sendEvent = new SendEvent();
+            double bufferWaitBefore = sendEvent.isEnabled() ? metricValue(bufferWait) : 0;
+            ackEvent.begin();
+            sendEvent.begin();
+            long sendStart = System.nanoTime();
+            Future<RecordMetadata> result;
+            try {
+                result = producer.send(record, new Callback() {
+                    public void onCompletion(RecordMetadata metadata, Exception e) {
+                        ackEvent.end();
+                        // A failure is logged by the caller, which gets it from the future
+                        if (e == null && printRecords) {
+                            System.out.println("The offset of the order record we just sent is: " + metadata.offset());
+                        }
+                        if (ackEvent.shouldCommit()) {
+                            ackEvent.topic = record.topic();
+                            ackEvent.partition = metadata != null ? metadata.partition() : -1;
+                            ackEvent.offset = metadata != null ? metadata.offset() : -1;
+                            ackEvent.failure = e != null ? e.getClass().getName() : null;
+                            ackEvent.commit();
+                        }
+                    }
+                });
+            } finally {
+                sendEvent.end();
+                if (sendEvent.shouldCommit()) {
+                    sendEvent.topic = record.topic();
+                    sendEvent.bufferWait = (long) (metricValue(bufferWait) - bufferWaitBefore);
+                    sendEvent.commit();
+                }
+            }
+            result.get();
+            sendLatency.record(System.nanoTime() - sendStart);
+        }
+
+        private static Metric findMetric(Producer<String, Object> producer, String name) {
+            for (Map.Entry<MetricName, ? extends Metric> metric : producer.metrics().entrySet()) {
+                if (metric.getKey().name().equals(name) && metric.getKey().group().equals("producer-metrics")) {
+                    return metric.getValue();
+                }
+            }
+            return null;
+        }
+
+        private static double metricValue(Metric metric) {
+            Object value = metric != null ? metric.metricValue() : null;
+            return value instanceof Number ? ((Number) value).doubleValue() : 0;
+        }
+
+        /**
+         * Generates the next payment, invalid with the {@code producer.invalid.ratio} of the moment.
+         */
+        Sale nextSale(Random random) {
+            boolean invalid = random.nextDouble() < workload.getDouble("producer.invalid.ratio", DEFAULT_INVALID_RATIO);
+            return SalesDataGen.getSale(invalid, props.getProperty(ProducerConfig.CLIENT_ID_CONFIG));
+        }
+
+        /**
+         * Whether to send the payment again, with the {@code producer.duplicate.ratio} of the moment.
+         */
+        boolean isDuplicate(Random random) {
+            return random.nextDouble() < workload.getDouble("producer.duplicate.ratio", DEFAULT_DUPLICATE_RATIO);
+        }
+
+        /**
+         * Waits for the next send slot. The pause comes from {@code producer.records.per.second}, shared by
+         * {@code producer.threads} threads, or else from {@code producer.interval.ms}, both read on every call.
+         */
+        long pace(long nextSend) throws InterruptedException {
+            double recordsPerSecond = workload.getDouble("producer.records.per.second", 0);
+            long intervalNanos;
+            if (recordsPerSecond > 0) {
+                intervalNanos = (long) (Math.max(1, workload.getInt("producer.threads", 1)) * 1e9 / recordsPerSecond);
+            } else {
+                intervalNanos = TimeUnit.MILLISECONDS.toNanos(workload.getLong("producer.interval.ms", DEFAULT_INTERVAL_MS));
+            }
+            if (intervalNanos <= 0) {
+                return System.nanoTime();
+            }
+            long now = System.nanoTime();
+            long wait = nextSend - now;
+            if (wait > intervalNanos) {
+                // The rate went up since the last send: do not wait out the old, longer interval
+                wait = intervalNanos;
+                nextSend = now + wait;
+            } else if (wait < -TimeUnit.SECONDS.toNanos(1)) {
+                // Too far behind to catch up, for example after a broker hiccup: restart the schedule
+                wait = 0;
+                nextSend = now;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            return nextSend + intervalNanos;
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        Properties getProducerConfig() {
+            return props;
+        }
+
+        LatencyHistogram getSendLatency() {
+            return sendLatency;
+        }
+
+        /**
+         * Builds the producer, its serializers and a first payment without sending anything, which loads the
+         * classes the producer needs before its first send.
+         */
+        void warmUp() {
+            try (Producer<String, Object> producer = new KafkaProducer<>(props)) {
+                SalesDataGen.getSale(false, props.getProperty(ProducerConfig.CLIENT_ID_CONFIG));
+            }
+        }
+
 
         public static void main ( final String[] args) throws Exception {
             if (args.length < 2) {
@@ -113,16 +268,53 @@ public class ProducerApp implements Runnable {
                         "Provide the propertiesFile clientId  as arguments");
                 System.exit(1);
             }
-            ExecutorService exec = Executors.newFixedThreadPool(Integer.parseInt(args[1]));
-            for(int i = 0; i < Integer.parseInt(args[1]); i++) {
-                exec.submit(new Runnable() {
-                    public void run() {
-                        ProducerApp producer = new ProducerApp(args[0], "Pos_Store_"+(new Faker().address().cityName()));
-                        System.out.println("Starting new Thread ");
-                        producer.run();
+            if (Boolean.getBoolean("startup.only")) {
+                // Training run of the class-data-sharing archive built into the Docker image
+                new ProducerApp(args[0], "Pos_Store_" + StoreNames.get(0)).warmUp();
+                return;
+            }
+            Properties config = ClientsUtils.loadConfig(args[0]);
+            if (LoadAgent.isEnabled(config)) {
+                new LoadAgent(args[0], config, Integer.parseInt(args[1])).run();
+                return;
+            }
+            if (StagedPipeline.isEnabled(config)) {
+                new StagedPipeline(args[0], config).run();
+                return;
+            }
+            int firstStore = StoreNames.firstIndex(config);
+            if (ThroughputSearch.isEnabled(config)) {
+                new ThroughputSearch(new ProducerApp(args[0], "Pos_Store_" + StoreNames.get(firstStore)).getProducerConfig()).run();
+                return;
+            }
+            // The thread count given on the command line applies until the workload file sets another one
+            config.setProperty("producer.threads", args[1]);
+            WorkloadConfig workload = new WorkloadConfig(config);
+            workload.start();
+            long durationMs = Long.parseLong(config.getProperty("run.duration.seconds", "0")) * 1000;
+            long deadline = System.currentTimeMillis() + durationMs;
 
-                    }
-                });
+            ExecutorService exec = Executors.newCachedThreadPool();
+            List<ProducerApp> producers = new ArrayList<>();
+            int started = 0;
+            while (durationMs == 0 || System.currentTimeMillis() < deadline) {
+                int threads = Math.max(0, workload.getInt("producer.threads", Integer.parseInt(args[1])));
+                while (producers.size() < threads) {
+                    ProducerApp producer = new ProducerApp(args[0], "Pos_Store_" + StoreNames.get(firstStore + started++), workload);
+                    producers.add(producer);
+                    exec.submit(new Runnable() {
+                        public void run() {
+                            System.out.println("Starting new Thread ");
+                            producer.run();
+
+                        }
+                    });
+                }
+                while (producers.size() > threads) {
+                    producers.remove(producers.size() - 1).stop();
+                    System.out.println("Stopping a Thread ");
+                }
+                Thread.sleep(1000);
             }
 
             exec.shutdown();
@@ -0,0 +1,421 @@
+package io.confluent.examples.datacontract;
+
+import io.confluent.examples.datacontract.datagen.StoreNames;
+import io.confluent.examples.datacontract.jfr.RecordedAvroSerializer;
+import io.confluent.examples.datacontract.pojo.avro.Sale;
+import io.confluent.examples.datacontract.tracing.TraceHeaders;
+import io.confluent.examples.datacontract.utils.LatencyHistogram;
+import io.confluent.examples.datacontract.utils.SpscRingBuffer;
+import io.confluent.examples.datacontract.utils.WorkloadConfig;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * Runs {@code ProducerApp} as a pipeline of stages, each with its own threads: generate, validate (optional),
+ * serialize and send. Serialization, which runs the {@code ENCRYPT} and CEL rules, can then get more threads than
+ * the rest. Every thread of a stage has one {@link SpscRingBuffer} per thread of the stage before it, so every
+ * buffer has a single producer and a single consumer. A thread hands its records round robin to the next stage's
+ * threads, and waits when all of their buffers are full.
+ *
+ * <p>Every {@code pipeline.report.interval.seconds}, the pipeline logs for each stage its records per second, how
+ * full its input buffers were, and the share of its threads' time spent waiting for input (idle) or for room
+ * downstream (blocked). A saturated stage has full input buffers, little idle time, and blocks the stage before
+ * it.
+ *
+ * <p>The send stage sends asynchronously on one shared producer and does not print the records. The generate
+ * stage keeps the pacing, invalid and duplicate ratios of {@code ProducerApp}, read live from the workload file.
+ */
+class StagedPipeline {
+
+    private static final Logger logger = Logger.getLogger(StagedPipeline.class);
+
+    // The check of the validateConfirmationCode rule
+    private static final Pattern CONFIRMATION_CODE = Pattern.compile("^[A-Z0-9]{8}$");
+
+    private static final class Payment {
+        final Sale sale;
+        final Headers headers;
+        final boolean duplicate;
+        byte[] value;
+
+        Payment(Sale sale, Headers headers, boolean duplicate) {
+            this.sale = sale;
+            this.headers = headers;
+            this.duplicate = duplicate;
+        }
+    }
+
+    /**
+     * The threads of one stage, the buffers they read and their counters.
+     */
+    private abstract static class Stage {
+        final String name;
+        final int threads;
+        // inputs.get(j).get(i) carries records from thread i of the stage before to thread j of this one
+        final List<List<SpscRingBuffer<Payment>>> inputs = new ArrayList<>();
+        final AtomicInteger running;
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong idleNanos = new AtomicLong();
+        final AtomicLong blockedNanos = new AtomicLong();
+        Stage previous;
+        Stage next;
+        // Input occupancy samples since the last report
+        double occupancySum;
+        double occupancyMax;
+        int occupancySamples;
+
+        Stage(String name, int threads) {
+            this.name = name;
+            this.threads = Math.max(1, threads);
+            this.running = new AtomicInteger(this.threads);
+        }
+
+        /**
+         * Processes a record on thread {@code thread}, and returns what goes to the next stage, if anything.
+         */
+        abstract Payment process(int thread, Payment payment) throws Exception;
+
+        void close() {
+        }
+
+        double occupancy() {
+            long size = 0;
+            long capacity = 0;
+            for (List<SpscRingBuffer<Payment>> buffers : inputs) {
+                for (SpscRingBuffer<Payment> buffer : buffers) {
+                    size += buffer.size();
+                    capacity += buffer.capacity();
+                }
+            }
+            return capacity == 0 ? 0 : (double) size / capacity;
+        }
+    }
+
+    private final Properties props;
+    private final String topic = "payments";
+    private final WorkloadConfig workload;
+    private final List<ProducerApp> generators = new ArrayList<>();
+    private final Producer<String, byte[]> producer;
+    private final List<Stage> stages = new ArrayList<>();
+    private final int capacity;
+    private final long durationMs;
+    private final AtomicLong failedSends = new AtomicLong();
+    // Written by the producer I/O thread only
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+    StagedPipeline(String propertiesFile, Properties config) {
+        this.props = config;
+        this.capacity = Integer.parseInt(config.getProperty("pipeline.buffer.capacity", "1024"));
+        this.durationMs = Long.parseLong(config.getProperty("run.duration.seconds", "0")) * 1000;
+        int generateThreads = Math.max(1, Integer.parseInt(config.getProperty("pipeline.generate.threads", "1")));
+        // The pacing of ProducerApp splits the rate over producer.threads
+        config.setProperty("producer.threads", String.valueOf(generateThreads));
+        this.workload = new WorkloadConfig(config);
+        int firstStore = StoreNames.firstIndex(config);
+        for (int i = 0; i < generateThreads; i++) {
+            generators.add(new ProducerApp(propertiesFile, "Pos_Store_" + StoreNames.get(firstStore + i), workload));
+        }
+        Properties producerConfig = new Properties();
+        producerConfig.putAll(generators.get(0).getProducerConfig());
+        producerConfig.put(ProducerConfig.CLIENT_ID_CONFIG, "Pos_Store_Pipeline");
+        producerConfig.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        this.producer = new KafkaProducer<>(producerConfig);
+
+        boolean trace = TraceHeaders.isEnabled(config);
+        Random[] randoms = new Random[generateThreads];
+        for (int i = 0; i < generateThreads; i++) {
+            randoms[i] = new Random();
+        }
+        stages.add(new Stage("generate", generateThreads) {
+            @Override
+            Payment process(int thread, Payment ignored) {
+                ProducerApp generator = generators.get(thread);
+                Headers headers = new RecordHeaders();
+                if (trace) {
+                    TraceHeaders.stamp(headers);
+                }
+                return new Payment(generator.nextSale(randoms[thread]), headers, generator.isDuplicate(randoms[thread]));
+            }
+        });
+        if (Boolean.parseBoolean(config.getProperty("pipeline.validate", "false"))) {
+            stages.add(new Stage("validate", Integer.parseInt(config.getProperty("pipeline.validate.threads", "1"))) {
+                @Override
+                Payment process(int thread, Payment payment) {
+                    if (CONFIRMATION_CODE.matcher(payment.sale.getConfirmationCode()).matches()) {
+                        return payment;
+                    }
+                    dropped.incrementAndGet();
+                    return null;
+                }
+            });
+        }
+        Map<String, Object> serializerConfig = new HashMap<>();
+        for (String name : producerConfig.stringPropertyNames()) {
+            serializerConfig.put(name, producerConfig.getProperty(name));
+        }
+        int serializeThreads = Math.max(1, Integer.parseInt(config.getProperty("pipeline.serialize.threads", "1")));
+        List<Serializer<Object>> serializers = new ArrayList<>();
+        for (int i = 0; i < serializeThreads; i++) {
+            Serializer<Object> serializer = new RecordedAvroSerializer();
+            serializer.configure(serializerConfig, false);
+            serializers.add(serializer);
+        }
+        stages.add(new Stage("serialize", serializeThreads) {
+            @Override
+            Payment process(int thread, Payment payment) {
+                try {
+                    payment.value = serializers.get(thread).serialize(topic, payment.headers, payment.sale);
+                    return payment;
+                } catch (Exception e) {
+                    // Invalid payments fail the CEL rule, which has already sent them to the DLQ
+                    dropped.incrementAndGet();
+                    logger.debug("Serialization failed for order " + payment.sale.getOrderId(), e);
+                    return null;
+                }
+            }
+
+            @Override
+            void close() {
+                serializers.forEach(Serializer::close);
+            }
+        });
+        stages.add(new Stage("send", Integer.parseInt(config.getProperty("pipeline.send.threads", "1"))) {
+            @Override
+            Payment process(int thread, Payment payment) {
+                send(payment);
+                if (payment.duplicate) {
+                    send(payment);
+                }
+                return null;
+            }
+        });
+
+        for (int s = 1; s < stages.size(); s++) {
+            Stage stage = stages.get(s);
+            stage.previous = stages.get(s - 1);
+            stage.previous.next = stage;
+            for (int j = 0; j < stage.threads; j++) {
+                List<SpscRingBuffer<Payment>> buffers = new ArrayList<>();
+                for (int i = 0; i < stage.previous.threads; i++) {
+                    buffers.add(new SpscRingBuffer<>(capacity));
+                }
+                stage.inputs.add(buffers);
+            }
+        }
+    }
+
+    static boolean isEnabled(Properties props) {
+        return Boolean.parseBoolean(props.getProperty("pipeline.enabled", "false"));
+    }
+
+    private void send(Payment payment) {
+        long start = System.nanoTime();
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, null, null, null, payment.value,
+                payment.headers);
+        producer.send(record, (metadata, e) -> {
+            if (e != null) {
+                if (failedSends.getAndIncrement() == 0) {
+                    logger.error("Send failed: ", e);
+                }
+            } else {
+                sendLatency.record(System.nanoTime() - start);
+            }
+        });
+    }
+
+    void run() throws InterruptedException {
+        workload.start();
+        long deadline = System.currentTimeMillis() + durationMs;
+        List<Thread> threads = new ArrayList<>();
+        for (Stage stage : stages) {
+            for (int j = 0; j < stage.threads; j++) {
+                int thread = j;
+                Thread t = new Thread(() -> runThread(stage, thread, deadline), "pipeline-" + stage.name + "-" + j);
+                t.setDaemon(true);
+                threads.add(t);
+                t.start();
+            }
+        }
+
+        long reportIntervalMs = Long.parseLong(props.getProperty("pipeline.report.interval.seconds", "10")) * 1000;
+        long start = System.currentTimeMillis();
+        long lastReport = start;
+        long[] lastCounters = new long[stages.size() * 4];
+        Stage last = stages.get(stages.size() - 1);
+        while (last.running.get() > 0) {
+            Thread.sleep(10);
+            for (Stage stage : stages) {
+                double occupancy = stage.occupancy();
+                stage.occupancySum += occupancy;
+                stage.occupancyMax = Math.max(stage.occupancyMax, occupancy);
+                stage.occupancySamples++;
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= reportIntervalMs) {
+                report(now - lastReport, lastCounters);
+                lastReport = now;
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        report(Math.max(1, System.currentTimeMillis() - lastReport), lastCounters);
+        producer.close();
+        for (Stage stage : stages) {
+            stage.close();
+        }
+        long sent = sendLatency.getCount();
+        logger.info(String.format("Pipeline done: %d records acknowledged in %.1f s, %d failed, send to ack p50 %.1f ms,"
+                        + " p99 %.1f ms", sent, (System.currentTimeMillis() - start) / 1000.0, failedSends.get(),
+                sendLatency.getPercentile(50) / 1e6, sendLatency.getPercentile(99) / 1e6));
+    }
+
+    /**
+     * The loop of one thread of a stage. The generate stage runs until the stop or the end of the run, the others
+     * until the stage before them has stopped and their buffers are drained.
+     */
+    private void runThread(Stage stage, int thread, long deadline) {
+        ProducerApp generator = stage.previous == null ? generators.get(thread) : null;
+        List<SpscRingBuffer<Payment>> inputs = stage.previous == null ? null : stage.inputs.get(thread);
+        int nextInput = 0;
+        int nextOutput = thread;
+        long nextSend = System.nanoTime();
+        int idleRounds = 0;
+        try {
+            while (true) {
+                Payment payment = null;
+                if (generator != null) {
+                    if (durationMs > 0 && System.currentTimeMillis() >= deadline) {
+                        break;
+                    }
+                    nextSend = generator.pace(nextSend);
+                } else {
+                    boolean previousDone = stage.previous.running.get() == 0;
+                    for (int i = 0; i < inputs.size() && payment == null; i++) {
+                        payment = inputs.get(nextInput).poll();
+                        nextInput = (nextInput + 1) % inputs.size();
+                    }
+                    if (payment == null) {
+                        // Stopped only when the buffers are still empty after the stage before has stopped
+                        if (previousDone) {
+                            break;
+                        }
+                        long idleStart = System.nanoTime();
+                        backOff(idleRounds++);
+                        stage.idleNanos.addAndGet(System.nanoTime() - idleStart);
+                        continue;
+                    }
+                    idleRounds = 0;
+                }
+                Payment result;
+                try {
+                    result = stage.process(thread, payment);
+                } catch (Exception e) {
+                    logger.error("Error in pipeline stage " + stage.name + ": ", e);
+                    continue;
+                }
+                stage.processed.incrementAndGet();
+                if (result != null && stage.next != null) {
+                    nextOutput = handOver(stage, thread, result, nextOutput);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stage.running.decrementAndGet();
+        }
+    }
+
+    /**
+     * Puts a record in the buffer from this thread to the next free thread of the next stage, waiting while all
+     * of them are full.
+     *
+     * @return the thread of the next stage to try first next time
+     */
+    private int handOver(Stage stage, int thread, Payment payment, int nextOutput) {
+        List<List<SpscRingBuffer<Payment>>> outputs = stage.next.inputs;
+        long blockedStart = 0;
+        for (int round = 0; ; round++) {
+            for (int j = 0; j < outputs.size(); j++) {
+                int target = (nextOutput + j) % outputs.size();
+                if (outputs.get(target).get(thread).offer(payment)) {
+                    if (blockedStart != 0) {
+                        stage.blockedNanos.addAndGet(System.nanoTime() - blockedStart);
+                    }
+                    return (target + 1) % outputs.size();
+                }
+            }
+            if (blockedStart == 0) {
+                blockedStart = System.nanoTime();
+            }
+            backOff(round);
+        }
+    }
+
+    /**
+     * Spins at first, then yields, then parks for 50 microseconds, so a short wait costs no wake-up latency and a long one
+     * no CPU.
+     */
+    private static void backOff(int round) {
+        if (round < 100) {
+            Thread.onSpinWait();
+        } else if (round < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+    }
+
+    /**
+     * Logs the rate, input occupancy, idle and blocked time of each stage since the last report.
+     */
+    private void report(long elapsedMs, long[] lastCounters) {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Pipeline over %.0f s, buffers of %d records", elapsedMs / 1000.0, capacity));
+        lines.add(String.format("%-10s %7s %12s %8s %8s %8s %8s %8s", "stage", "threads", "records/s", "dropped",
+                "in avg", "in max", "idle", "blocked"));
+        for (int s = 0; s < stages.size(); s++) {
+            Stage stage = stages.get(s);
+            long processed = stage.processed.get();
+            long dropped = stage.dropped.get();
+            long idle = stage.idleNanos.get();
+            long blocked = stage.blockedNanos.get();
+            double threadNanos = stage.threads * TimeUnit.MILLISECONDS.toNanos(elapsedMs);
+            boolean source = stage.previous == null;
+            lines.add(String.format("%-10s %7d %12.0f %8d %8s %8s %7.1f%% %7.1f%%", stage.name, stage.threads,
+                    (processed - lastCounters[4 * s]) * 1000.0 / elapsedMs, dropped - lastCounters[4 * s + 3],
+                    source ? "-" : String.format("%.1f%%", 100 * stage.occupancySum / Math.max(1, stage.occupancySamples)),
+                    source ? "-" : String.format("%.1f%%", 100 * stage.occupancyMax),
+                    100 * (idle - lastCounters[4 * s + 1]) / threadNanos,
+                    100 * (blocked - lastCounters[4 * s + 2]) / threadNanos));
+            lastCounters[4 * s] = processed;
+            lastCounters[4 * s + 1] = idle;
+            lastCounters[4 * s + 2] = blocked;
+            lastCounters[4 * s + 3] = dropped;
+            stage.occupancySum = 0;
+            stage.occupancyMax = 0;
+            stage.occupancySamples = 0;
+        }
+        logger.info(String.join(System.lineSeparator(), lines));
+    }
+}
@@ -0,0 +1,245 @@
+package io.confluent.examples.datacontract;
+
+import io.confluent.examples.datacontract.datagen.SalesDataGen;
+import io.confluent.examples.datacontract.utils.LatencyHistogram;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the highest payments rate the cluster sustains within a p99 latency objective. Each step offers a fixed
+ * rate for {@code search.step.seconds} with asynchronous sends on one producer, so the load does not depend on the
+ * latency of the previous record. A step passes when the acknowledged rate keeps up with the offered rate, the p99
+ * ack latency stays under {@code search.p99.slo.ms}, no send fails and the producer buffer does not fill up. The
+ * rate doubles from {@code search.start.records.per.second} until a step fails, then a binary search narrows the
+ * knee down to {@code search.precision}.
+ *
+ * <p>Latency is measured from the time a record was scheduled, not from when it was handed to the producer, so a
+ * blocked {@code send} counts against the step instead of hiding the backlog.
+ */
+class ThroughputSearch {
+
+    private static final Logger logger = Logger.getLogger(ThroughputSearch.class);
+
+    private static final String TOPIC = "payments";
+
+    static final class Step {
+        final double offeredRate;
+        final double ackedRate;
+        final double p50Millis;
+        final double p99Millis;
+        final long errors;
+        final double recordQueueTimeAvgMillis;
+        final double requestLatencyAvgMillis;
+        final double minBufferAvailableRatio;
+        String failure;
+
+        Step(double offeredRate, double ackedRate, double p50Millis, double p99Millis, long errors,
+             double recordQueueTimeAvgMillis, double requestLatencyAvgMillis, double minBufferAvailableRatio) {
+            this.offeredRate = offeredRate;
+            this.ackedRate = ackedRate;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.errors = errors;
+            this.recordQueueTimeAvgMillis = recordQueueTimeAvgMillis;
+            this.requestLatencyAvgMillis = requestLatencyAvgMillis;
+            this.minBufferAvailableRatio = minBufferAvailableRatio;
+        }
+
+        boolean passed() {
+            return failure == null;
+        }
+    }
+
+    private final Properties props;
+    private final String store;
+    private final double startRate;
+    private final double maxRate;
+    private final long stepNanos;
+    private final long warmupNanos;
+    private final double p99SloMillis;
+    private final double rateTolerance;
+    private final double minBufferRatio;
+    private final double precision;
+    private final int maxSteps;
+
+    ThroughputSearch(Properties props) {
+        this.props = props;
+        this.store = props.getProperty(ProducerConfig.CLIENT_ID_CONFIG);
+        this.startRate = Double.parseDouble(props.getProperty("search.start.records.per.second", "100"));
+        this.maxRate = Double.parseDouble(props.getProperty("search.max.records.per.second", "100000"));
+        this.stepNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(props.getProperty("search.step.seconds", "30")));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(props.getProperty("search.warmup.seconds", "5")));
+        this.p99SloMillis = Double.parseDouble(props.getProperty("search.p99.slo.ms", "100"));
+        this.rateTolerance = Double.parseDouble(props.getProperty("search.rate.tolerance", "0.05"));
+        this.minBufferRatio = Double.parseDouble(props.getProperty("search.min.buffer.available.ratio", "0.5"));
+        this.precision = Double.parseDouble(props.getProperty("search.precision", "0.05"));
+        this.maxSteps = Integer.parseInt(props.getProperty("search.max.steps", "20"));
+    }
+
+    static boolean isEnabled(Properties props) {
+        return Boolean.parseBoolean(props.getProperty("search.enabled", "false"));
+    }
+
+    /**
+     * Runs the search and prints the report.
+     *
+     * @return the highest rate that passed, 0 when even the start rate failed
+     */
+    double run() throws InterruptedException {
+        List<Step> steps = new ArrayList<>();
+        double best = 0;
+        double worst = Double.NaN;
+        try (Producer<String, Object> producer = new KafkaProducer<>(props)) {
+            double bufferMemory = Double.parseDouble(props.getProperty(ProducerConfig.BUFFER_MEMORY_CONFIG, "33554432"));
+
+            // Ramp: double the rate until a step fails
+            double rate = startRate;
+            while (steps.size() < maxSteps) {
+                Step step = runStep(producer, rate, bufferMemory);
+                steps.add(step);
+                if (!step.passed()) {
+                    worst = rate;
+                    break;
+                }
+                best = rate;
+                if (rate >= maxRate) {
+                    break;
+                }
+                rate = Math.min(maxRate, rate * 2);
+            }
+
+            // Binary search between the last passing and the first failing rate
+            while (best > 0 && !Double.isNaN(worst) && steps.size() < maxSteps && worst - best > precision * best) {
+                rate = (best + worst) / 2;
+                Step step = runStep(producer, rate, bufferMemory);
+                steps.add(step);
+                if (step.passed()) {
+                    best = rate;
+                } else {
+                    worst = rate;
+                }
+            }
+        }
+        printReport(steps, best, worst);
+        return best;
+    }
+
+    private Step runStep(Producer<String, Object> producer, double rate, double bufferMemory) throws InterruptedException {
+        logger.info(String.format("Offering %.0f records/s for %d s", rate, TimeUnit.NANOSECONDS.toSeconds(stepNanos)));
+        LatencyHistogram ackLatency = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        long intervalNanos = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + stepNanos;
+        long nextSend = start;
+        double minBufferAvailable = bufferMemory;
+        long nextSample = start;
+
+        while (nextSend < end) {
+            long now = System.nanoTime();
+            if (nextSend - now > TimeUnit.MILLISECONDS.toNanos(1)) {
+                TimeUnit.NANOSECONDS.sleep(nextSend - now);
+            }
+            if (now >= nextSample) {
+                double available = metric(producer, "buffer-available-bytes");
+                if (!Double.isNaN(available)) {
+                    minBufferAvailable = Math.min(minBufferAvailable, available);
+                }
+                nextSample = now + TimeUnit.MILLISECONDS.toNanos(100);
+            }
+            final long scheduled = nextSend;
+            final boolean measured = scheduled >= measureFrom;
+            // Only valid payments: invalid ones go to the DLQ and fail the send by design
+            Object sale = SalesDataGen.getSale(false, store);
+            try {
+                producer.send(new ProducerRecord<>(TOPIC, sale), (metadata, e) -> {
+                    if (!measured) {
+                        return;
+                    }
+                    if (e != null) {
+                        errors.incrementAndGet();
+                    } else {
+                        ackLatency.record(System.nanoTime() - scheduled);
+                    }
+                });
+            } catch (Exception e) {
+                // Serialization and buffer exhaustion errors are thrown by send itself
+                if (measured) {
+                    errors.incrementAndGet();
+                }
+            }
+            nextSend += intervalNanos;
+        }
+        producer.flush();
+        double seconds = (System.nanoTime() - measureFrom) / 1e9;
+
+        Step step = new Step(rate, ackLatency.getCount() / seconds,
+                ackLatency.getPercentile(50) / 1e6, ackLatency.getPercentile(99) / 1e6, errors.get(),
+                metric(producer, "record-queue-time-avg"), metric(producer, "request-latency-avg"),
+                minBufferAvailable / bufferMemory);
+        // The acked rate is over the time including the final flush, so a step that fell behind shows up here
+        if (step.errors > 0) {
+            step.failure = step.errors + " failed sends";
+        } else if (step.ackedRate < rate * (1 - rateTolerance)) {
+            step.failure = String.format("acked %.0f records/s", step.ackedRate);
+        } else if (step.p99Millis > p99SloMillis) {
+            step.failure = String.format("p99 %.1f ms over the %.1f ms objective", step.p99Millis, p99SloMillis);
+        } else if (step.minBufferAvailableRatio < minBufferRatio) {
+            step.failure = String.format("buffer %.0f%% full", 100 * (1 - step.minBufferAvailableRatio));
+        }
+        logger.info(format(step));
+        return step;
+    }
+
+    /**
+     * Current value of a producer metric of the {@code producer-metrics} group, NaN if the producer has none yet.
+     */
+    private static double metric(Producer<String, Object> producer, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> metric : producer.metrics().entrySet()) {
+            if (metric.getKey().name().equals(name) && metric.getKey().group().equals("producer-metrics")) {
+                Object value = metric.getValue().metricValue();
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue();
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static String format(Step step) {
+        return String.format("%10.0f %10.0f %9.2f %9.2f %7d %11.2f %13.2f %9.0f%%  %s",
+                step.offeredRate, step.ackedRate, step.p50Millis, step.p99Millis, step.errors,
+                step.recordQueueTimeAvgMillis, step.requestLatencyAvgMillis, 100 * step.minBufferAvailableRatio,
+                step.passed() ? "ok" : step.failure);
+    }
+
+    private void printReport(List<Step> steps, double best, double worst) {
+        System.out.println();
+        System.out.println("Sustainable rate search, p99 objective " + p99SloMillis + " ms");
+        System.out.println(String.format("%10s %10s %9s %9s %7s %11s %13s %10s  %s",
+                "offered/s", "acked/s", "p50 ms", "p99 ms", "errors", "queue ms", "request ms", "min buffer", "result"));
+        for (Step step : steps) {
+            System.out.println(format(step));
+        }
+        if (best == 0) {
+            System.out.println(String.format("No sustainable rate: the start rate of %.0f records/s already fails", startRate));
+        } else if (Double.isNaN(worst)) {
+            System.out.println(String.format("Sustainable rate: at least %.0f records/s, the highest rate tried", best));
+        } else {
+            System.out.println(String.format("Sustainable rate: %.0f records/s (%.0f records/s fails)", best, worst));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.confluent.examples.datacontract.datagen;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the wall-clock time a payment is generated at into its event time ({@code ts}).
+ * <ul>
+ *     <li>{@code event.clock.mode}: {@code real} (default) uses the wall clock. {@code accelerated} starts at
+ *     {@code event.clock.start} (default now) and runs {@code event.clock.speed} times faster. {@code historical}
+ *     maps the range {@code event.clock.start} to {@code event.clock.end} onto {@code event.clock.duration.minutes}
+ *     of wall time and keeps going at that speed afterwards.</li>
+ *     <li>{@code event.skew.max.ms}: every store gets a fixed clock offset between minus and plus this value.</li>
+ *     <li>{@code event.disorder.ratio}, {@code event.disorder.distribution} ({@code uniform} or {@code exponential}),
+ *     {@code event.disorder.mean.ms} and {@code event.disorder.max.ms}: share of payments that are delayed, and by how
+ *     much. Delays beyond the 5 second watermark of {@code completed_orders} produce late records.</li>
+ * </ul>
+ */
+public class EventTimeModel {
+
+    private final long wallStart;
+    private final long eventStart;
+    private final double speed;
+    private final long maxSkewMs;
+    private final double disorderRatio;
+    private final boolean exponentialDisorder;
+    private final long disorderMeanMs;
+    private final long disorderMaxMs;
+    private final Map<String, Long> storeSkews = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+
+    public EventTimeModel(Properties props) {
+        this.wallStart = System.currentTimeMillis();
+        String mode = props.getProperty("event.clock.mode", "real");
+        String start = props.getProperty("event.clock.start");
+        switch (mode) {
+            case "real":
+                this.eventStart = wallStart;
+                this.speed = 1;
+                break;
+            case "accelerated":
+                this.eventStart = start != null ? Instant.parse(start).toEpochMilli() : wallStart;
+                this.speed = Double.parseDouble(props.getProperty("event.clock.speed", "60"));
+                break;
+            case "historical":
+                if (start == null || props.getProperty("event.clock.end") == null) {
+                    throw new IllegalArgumentException("event.clock.mode=historical needs event.clock.start and event.clock.end");
+                }
+                this.eventStart = Instant.parse(start).toEpochMilli();
+                long range = Instant.parse(props.getProperty("event.clock.end")).toEpochMilli() - eventStart;
+                long duration = Duration.ofMinutes(Long.parseLong(props.getProperty("event.clock.duration.minutes", "10"))).toMillis();
+                this.speed = (double) range / duration;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event.clock.mode: " + mode);
+        }
+        this.maxSkewMs = Long.parseLong(props.getProperty("event.skew.max.ms", "0"));
+        this.disorderRatio = Double.parseDouble(props.getProperty("event.disorder.ratio", "0"));
+        String distribution = props.getProperty("event.disorder.distribution", "uniform");
+        if (!"uniform".equals(distribution) && !"exponential".equals(distribution)) {
+            throw new IllegalArgumentException("Unknown event.disorder.distribution: " + distribution);
+        }
+        this.exponentialDisorder = "exponential".equals(distribution);
+        this.disorderMeanMs = Long.parseLong(props.getProperty("event.disorder.mean.ms", "1000"));
+        this.disorderMaxMs = Long.parseLong(props.getProperty("event.disorder.max.ms", "10000"));
+    }
+
+    public static boolean isEnabled(Properties props) {
+        return !"real".equals(props.getProperty("event.clock.mode", "real"))
+                || props.getProperty("event.skew.max.ms") != null
+                || props.getProperty("event.disorder.ratio") != null;
+    }
+
+    /**
+     * Event time for something that happened at {@code wallMillis} in the given store.
+     */
+    public long eventTime(long wallMillis, String store) {
+        long eventTime = eventStart + (long) ((wallMillis - wallStart) * speed);
+        if (maxSkewMs > 0 && store != null) {
+            eventTime += storeSkews.computeIfAbsent(store, s -> {
+                // Derived from the store name so a store keeps its offset across restarts
+                long hash = s.hashCode() * 0x9E3779B97F4A7C15L;
+                return Math.floorMod(hash >>> 16, 2 * maxSkewMs + 1) - maxSkewMs;
+            });
+        }
+        if (disorderRatio > 0 && nextDouble() < disorderRatio) {
+            eventTime -= sampleDelayMs();
+        }
+        return eventTime;
+    }
+
+    private long sampleDelayMs() {
+        if (exponentialDisorder) {
+            return Math.min(disorderMaxMs, (long) (-disorderMeanMs * Math.log(1 - nextDouble())));
+        }
+        return (long) (nextDouble() * disorderMaxMs);
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+}
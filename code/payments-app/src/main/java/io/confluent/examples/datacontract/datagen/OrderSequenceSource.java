@@ -0,0 +1,156 @@
+package io.confluent.examples.datacontract.datagen;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Tails the order sequence file written by the DataFeeder ({@code orderId,epochMillis} per line) and
+ * turns the fed orders into payments with a controlled join selectivity:
+ * <ul>
+ *     <li>{@code join.match.ratio}: share of fed orders that receive a payment</li>
+ *     <li>{@code join.orphan.ratio}: share of payments whose order_id matches no fed order</li>
+ *     <li>{@code join.lag.distribution}: {@code fixed}, {@code uniform} or {@code exponential} delay between
+ *     the order date and the payment, with {@code join.lag.mean.ms} and {@code join.lag.max.ms}</li>
+ * </ul>
+ * A payment is only handed out once its order date plus lag has passed, so its ts stays close to real time.
+ */
+public class OrderSequenceSource {
+
+    private static final Logger logger = Logger.getLogger(OrderSequenceSource.class);
+
+    // Orphan payments use ids far above anything the DataFeeder creates
+    private static final int FIRST_ORPHAN_ORDER_ID = 1_000_000_000;
+    private static final long POLL_INTERVAL_MS = 200;
+
+    public static class ScheduledPayment {
+        private final int orderId;
+        private final long timestamp;
+
+        ScheduledPayment(int orderId, long timestamp) {
+            this.orderId = orderId;
+            this.timestamp = timestamp;
+        }
+
+        public int getOrderId() {
+            return orderId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    private final String fileName;
+    private final double matchRatio;
+    private final double orphanRatio;
+    private final String lagDistribution;
+    private final long lagMeanMs;
+    private final long lagMaxMs;
+    private final Random random = new Random();
+
+    private final PriorityQueue<ScheduledPayment> pending =
+            new PriorityQueue<>((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+    private final StringBuilder partialLine = new StringBuilder();
+    private long position = 0;
+    private int nextOrphanOrderId = FIRST_ORPHAN_ORDER_ID;
+
+    public OrderSequenceSource(Properties props) {
+        this.fileName = props.getProperty("join.sequence.file");
+        this.matchRatio = Double.parseDouble(props.getProperty("join.match.ratio", "1.0"));
+        this.orphanRatio = Double.parseDouble(props.getProperty("join.orphan.ratio", "0.0"));
+        this.lagDistribution = props.getProperty("join.lag.distribution", "exponential");
+        this.lagMeanMs = Long.parseLong(props.getProperty("join.lag.mean.ms", "5000"));
+        this.lagMaxMs = Long.parseLong(props.getProperty("join.lag.max.ms", "60000"));
+        if (!"fixed".equals(lagDistribution) && !"uniform".equals(lagDistribution) && !"exponential".equals(lagDistribution)) {
+            throw new IllegalArgumentException("Unknown join.lag.distribution: " + lagDistribution);
+        }
+    }
+
+    public static boolean isEnabled(Properties props) {
+        return props.getProperty("join.sequence.file") != null;
+    }
+
+    /**
+     * Blocks until the next payment is due. Orphans are returned right away with the current time.
+     */
+    public synchronized ScheduledPayment nextPayment() {
+        if (random.nextDouble() < orphanRatio) {
+            return new ScheduledPayment(nextOrphanOrderId++, System.currentTimeMillis());
+        }
+        try {
+            while (true) {
+                readNewOrders();
+                ScheduledPayment head = pending.peek();
+                long now = System.currentTimeMillis();
+                if (head != null && head.getTimestamp() <= now) {
+                    return pending.poll();
+                }
+                long waitMs = head == null ? POLL_INTERVAL_MS : Math.min(POLL_INTERVAL_MS, head.getTimestamp() - now);
+                wait(Math.max(1, waitMs));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ScheduledPayment(nextOrphanOrderId++, System.currentTimeMillis());
+        }
+    }
+
+    private long sampleLagMs() {
+        switch (lagDistribution) {
+            case "fixed":
+                return lagMeanMs;
+            case "uniform":
+                return (long) (random.nextDouble() * lagMaxMs);
+            default:
+                return Math.min(lagMaxMs, (long) (-lagMeanMs * Math.log(1 - random.nextDouble())));
+        }
+    }
+
+    private void readNewOrders() {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            long length = file.length();
+            if (length < position) {
+                // The feeder restarted and truncated the file
+                position = 0;
+                partialLine.setLength(0);
+            }
+            if (length == position) {
+                return;
+            }
+            file.seek(position);
+            byte[] buffer = new byte[(int) Math.min(length - position, 1 << 20)];
+            file.readFully(buffer);
+            position += buffer.length;
+            partialLine.append(new String(buffer, StandardCharsets.UTF_8));
+
+            int start = 0;
+            int end;
+            while ((end = partialLine.indexOf("\n", start)) >= 0) {
+                addOrder(partialLine.substring(start, end).trim());
+                start = end + 1;
+            }
+            partialLine.delete(0, start);
+        } catch (IOException e) {
+            // The feeder may not have created the file yet
+            logger.debug("Order sequence file not readable: " + e.getMessage());
+        }
+    }
+
+    private void addOrder(String line) {
+        int comma = line.indexOf(',');
+        if (comma < 0) {
+            return;
+        }
+        if (random.nextDouble() >= matchRatio) {
+            return;
+        }
+        int orderId = Integer.parseInt(line.substring(0, comma));
+        long orderTime = Long.parseLong(line.substring(comma + 1));
+        pending.add(new ScheduledPayment(orderId, orderTime + sampleLagMs()));
+    }
+}
@@ -1,18 +1,71 @@
 package io.confluent.examples.datacontract.datagen;
 
+import io.confluent.examples.datacontract.jfr.GenerateSaleEvent;
 import io.confluent.examples.datacontract.pojo.avro.Sale;
+import org.apache.log4j.Logger;
 
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SalesDataGen {
 
+    private static final Logger logger = Logger.getLogger(SalesDataGen.class);
+
     private static final String CONF_CODE_CHAR_LIST = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
     private static final int CONF_CODE_LENGTH = 8;
 
-    private static int orderId = 2500;
+    private static final AtomicInteger orderId = new AtomicInteger(2500);
+    // Inclusive bounds of the order ids this instance may use, see setOrderIdRange
+    private static volatile int firstOrderId = 2500;
+    private static volatile int lastOrderId = Integer.MAX_VALUE;
+
+    // Set when payments are attached to the orders fed by the DataFeeder
+    private static OrderSequenceSource orderSequence;
+
+    // Set when event times are accelerated, skewed per store or out of order
+    private static EventTimeModel eventTime;
+
+    // Set when the field distributions come from a workload profile
+    private static WorkloadProfile profile;
+
+    public static synchronized void configure(Properties props) {
+        if (orderSequence == null && OrderSequenceSource.isEnabled(props)) {
+            orderSequence = new OrderSequenceSource(props);
+        }
+        if (eventTime == null && EventTimeModel.isEnabled(props)) {
+            eventTime = new EventTimeModel(props);
+        }
+        if (profile == null && WorkloadProfile.isEnabled(props)) {
+            profile = WorkloadProfile.load(props);
+        }
+    }
+
+    /**
+     * Restricts the counter of order ids to {@code first..last}, so instances given disjoint ranges produce
+     * globally unique ids. When the range runs out the counter starts over at {@code first}.
+     */
+    public static void setOrderIdRange(int first, int last) {
+        firstOrderId = first;
+        lastOrderId = last;
+        orderId.set(first);
+    }
+
+    private static int nextOrderId() {
+        while (true) {
+            int current = orderId.get();
+            int next = current >= lastOrderId ? firstOrderId : current + 1;
+            if (orderId.compareAndSet(current, next)) {
+                if (current >= lastOrderId) {
+                    logger.warn("Order id range " + firstOrderId + ".." + lastOrderId + " exhausted, starting over");
+                }
+                return current;
+            }
+        }
+    }
 
     static int getRandomNumber(int max)
     {
@@ -20,8 +73,11 @@ public class SalesDataGen {
     }
 
     public static String generateConfirmationCode() {
+        return generateConfirmationCode(new Random());
+    }
+
+    private static String generateConfirmationCode(Random random) {
         StringBuilder code = new StringBuilder();
-        Random random = new Random();
         for (int i = 0; i < CONF_CODE_LENGTH; i++) {
             int index = random.nextInt(CONF_CODE_CHAR_LIST.length());
             code.append(CONF_CODE_CHAR_LIST.charAt(index));
@@ -31,10 +87,13 @@ public class SalesDataGen {
 
     public static String generateFakeCreditCardNumber() {
         Random random = new Random();
-        StringBuilder cardNumber = new StringBuilder();
-
         // Generate the first digit (between 2 and 4)
-        cardNumber.append(random.nextInt(3) + 2);
+        return generateFakeCreditCardNumber(random.nextInt(3) + 2, random);
+    }
+
+    private static String generateFakeCreditCardNumber(int firstDigit, Random random) {
+        StringBuilder cardNumber = new StringBuilder();
+        cardNumber.append(firstDigit);
 
         // Generate the next 15 digits
         for (int i = 2 ; i < 17; i++) {
@@ -48,7 +107,10 @@ public class SalesDataGen {
     }
 
     public static String generateFakeExpirationDate() {
-        Random random = new Random();
+        return generateFakeExpirationDate(new Random());
+    }
+
+    private static String generateFakeExpirationDate(Random random) {
         // Generate a year between 1 and 4 years in the future
         int yearToAdd = 1 + random.nextInt(4);
         // Generate a month between 1 and 12
@@ -65,17 +127,56 @@ public class SalesDataGen {
     }
 
     public static Sale getSale(int fail) {
+        return getSale(fail == 5, null);
+    }
+
+    public static Sale getSale(boolean invalid, String store) {
+        GenerateSaleEvent event = new GenerateSaleEvent();
+        event.begin();
+        Sale order = generateSale(invalid, store);
+        event.end();
+        if (event.shouldCommit()) {
+            event.store = store;
+            event.orderId = order.getOrderId();
+            event.invalid = invalid;
+            event.commit();
+        }
+        return order;
+    }
+
+    private static Sale generateSale(boolean invalid, String store) {
 
         Sale order = new Sale();
-        order.setOrderId(orderId++);
+        long timestamp;
+        if (orderSequence != null) {
+            OrderSequenceSource.ScheduledPayment payment = orderSequence.nextPayment();
+            order.setOrderId(payment.getOrderId());
+            timestamp = payment.getTimestamp();
+        } else {
+            order.setOrderId(nextOrderId());
+            timestamp = System.currentTimeMillis();
+        }
+        if (eventTime != null) {
+            timestamp = eventTime.eventTime(timestamp, store);
+        }
+        order.setTs(Instant.ofEpochMilli(timestamp));
+        if (profile != null) {
+            Random random = profile.getRandom(store);
+            order.setProductId(profile.nextProductId(random));
+            order.setCustomerId(profile.nextCustomerId(random));
+            order.setCcNumber(generateFakeCreditCardNumber(profile.nextCardPrefix(random), random));
+            order.setExpiration(generateFakeExpirationDate(random));
+            order.setAmount(profile.nextAmount(random));
+            order.setConfirmationCode(invalid ? "0" : generateConfirmationCode(random));
+            return order;
+        }
         order.setProductId(getRandomNumber(100));
         order.setCustomerId(getRandomNumber(50));
-        order.setTs(Instant.ofEpochMilli(System.currentTimeMillis()));
         order.setCcNumber(generateFakeCreditCardNumber());
         order.setExpiration(generateFakeExpirationDate());
         order.setAmount((new Random().nextDouble())*1000);
 
-        if (fail == 5) {
+        if (invalid) {
             order.setConfirmationCode("0");
         } else {
             order.setConfirmationCode(generateConfirmationCode());
@@ -0,0 +1,82 @@
+package io.confluent.examples.datacontract.datagen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Store names for the producer client ids, read once from {@code store-names.txt}. The catalog holds city names
+ * generated ahead of time, so starting a producer thread does not build a Faker and parse its locale files.
+ */
+public class StoreNames {
+
+    private static final String CATALOG = "store-names.txt";
+
+    private static volatile String[] names;
+
+    private StoreNames() {
+    }
+
+    /**
+     * Name of the {@code index}-th store. Names are unique up to the size of the catalog; after that they repeat
+     * with a numeric suffix.
+     */
+    public static String get(int index) {
+        String[] catalog = catalog();
+        String name = catalog[index % catalog.length];
+        int round = index / catalog.length;
+        return round == 0 ? name : name + " " + (round + 1);
+    }
+
+    /**
+     * Index of the first store of this process: {@code producer.store.offset} when set, else a random index into
+     * the catalog, so producers started with the same settings on different hosts use different stores.
+     */
+    public static int firstIndex(Properties props) {
+        String offset = props.getProperty("producer.store.offset");
+        if (offset != null) {
+            return Integer.parseInt(offset.trim());
+        }
+        return ThreadLocalRandom.current().nextInt(catalog().length);
+    }
+
+    private static String[] catalog() {
+        String[] catalog = names;
+        if (catalog == null) {
+            synchronized (StoreNames.class) {
+                catalog = names;
+                if (catalog == null) {
+                    catalog = load();
+                    names = catalog;
+                }
+            }
+        }
+        return catalog;
+    }
+
+    private static String[] load() {
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = StoreNames.class.getClassLoader().getResourceAsStream(CATALOG)) {
+            if (in == null) {
+                throw new IllegalStateException(CATALOG + " not found on the classpath");
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines.toArray(new String[0]);
+    }
+}
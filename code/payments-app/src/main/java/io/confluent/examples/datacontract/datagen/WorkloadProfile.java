@@ -0,0 +1,183 @@
+package io.confluent.examples.datacontract.datagen;
+
+import org.apache.log4j.Logger;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Distributions of the payment fields, read from the profile file named by {@code datagen.profile.file}: a path,
+ * or a resource such as {@code profiles/skewed.properties}. Without a profile {@code SalesDataGen} keeps its
+ * uniform defaults, which the defaults below reproduce.
+ * <ul>
+ *     <li>{@code product.*} and {@code customer.*}: {@code cardinality} ids starting at {@code first.id}, drawn
+ *     {@code uniform}, {@code zipf} with {@code zipf.exponent}, or {@code hotkey}, where the {@code hot.keys}
+ *     lowest ids get {@code hot.ratio} of the draws.</li>
+ *     <li>{@code amount.*}: {@code uniform} in [{@code min}, {@code max}), or {@code lognormal} around
+ *     {@code median} with {@code sigma}, capped at {@code max}.</li>
+ *     <li>{@code card.prefix.weights}: weights of the first card digit, as {@code digit:weight,...}.</li>
+ *     <li>{@code seed}: seeds every draw. Each store draws from its own generator, seeded from {@code seed} and the
+ *     store name, so a store sends the same sequence on every run however many threads run beside it.</li>
+ * </ul>
+ * Skewed ids are drawn from alias tables built at startup, so every draw costs O(1). The tables are read-only and
+ * shared by every thread; only the generators are per store, so the threads do not contend on one seed.
+ */
+class WorkloadProfile {
+
+    private static final Logger logger = Logger.getLogger(WorkloadProfile.class);
+
+    /**
+     * Ids {@code firstId .. firstId + cardinality - 1} with a uniform or skewed distribution.
+     */
+    static final class KeySampler {
+        private final int firstId;
+        private final int cardinality;
+        private final AliasTable table;
+        private final String description;
+
+        KeySampler(Properties profile, String name, int defaultCardinality) {
+            String prefix = name + ".";
+            this.firstId = Integer.parseInt(profile.getProperty(prefix + "first.id", "0"));
+            this.cardinality = Integer.parseInt(profile.getProperty(prefix + "cardinality", String.valueOf(defaultCardinality)));
+            if (cardinality < 1) {
+                throw new IllegalArgumentException(prefix + "cardinality must be at least 1");
+            }
+            String distribution = profile.getProperty(prefix + "distribution", "uniform");
+            double[] weights;
+            switch (distribution) {
+                case "uniform":
+                    this.table = null;
+                    this.description = String.format("uniform over %d ids", cardinality);
+                    return;
+                case "zipf":
+                    weights = new double[cardinality];
+                    double exponent = Double.parseDouble(profile.getProperty(prefix + "zipf.exponent", "1.0"));
+                    for (int i = 0; i < cardinality; i++) {
+                        weights[i] = 1 / Math.pow(i + 1, exponent);
+                    }
+                    this.description = String.format("zipf(%s) over %d ids", exponent, cardinality);
+                    break;
+                case "hotkey":
+                    weights = new double[cardinality];
+                    int hotKeys = Math.min(cardinality, Integer.parseInt(profile.getProperty(prefix + "hot.keys", "1")));
+                    double hotRatio = Double.parseDouble(profile.getProperty(prefix + "hot.ratio", "0.8"));
+                    for (int i = 0; i < cardinality; i++) {
+                        weights[i] = i < hotKeys ? hotRatio / hotKeys : (1 - hotRatio) / (cardinality - hotKeys);
+                    }
+                    this.description = String.format("%d hot of %d ids with %.0f%% of the draws", hotKeys, cardinality, 100 * hotRatio);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown " + prefix + "distribution: " + distribution);
+            }
+            this.table = new AliasTable(weights);
+        }
+
+        int sample(Random random) {
+            return firstId + (table == null ? random.nextInt(cardinality) : table.sample(random));
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private final Long seed;
+    private final ConcurrentMap<String, Random> randoms = new ConcurrentHashMap<>();
+    private final KeySampler products;
+    private final KeySampler customers;
+    private final boolean logNormalAmount;
+    private final double amountMin;
+    private final double amountMax;
+    private final double amountMu;
+    private final double amountSigma;
+    private final int[] cardPrefixes;
+    private final AliasTable cardPrefixTable;
+
+    WorkloadProfile(Properties profile) {
+        String seed = profile.getProperty("seed");
+        this.seed = seed != null ? Long.valueOf(seed) : null;
+        this.products = new KeySampler(profile, "product", 100);
+        this.customers = new KeySampler(profile, "customer", 50);
+
+        String amountDistribution = profile.getProperty("amount.distribution", "uniform");
+        if (!amountDistribution.equals("uniform") && !amountDistribution.equals("lognormal")) {
+            throw new IllegalArgumentException("Unknown amount.distribution: " + amountDistribution);
+        }
+        this.logNormalAmount = amountDistribution.equals("lognormal");
+        this.amountMin = Double.parseDouble(profile.getProperty("amount.min", "0"));
+        this.amountMax = Double.parseDouble(profile.getProperty("amount.max", "1000"));
+        this.amountMu = Math.log(Double.parseDouble(profile.getProperty("amount.median", "50")));
+        this.amountSigma = Double.parseDouble(profile.getProperty("amount.sigma", "1.0"));
+
+        String[] entries = profile.getProperty("card.prefix.weights", "2:1,3:1,4:1").split(",");
+        this.cardPrefixes = new int[entries.length];
+        double[] weights = new double[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            String[] entry = entries[i].trim().split(":");
+            cardPrefixes[i] = Integer.parseInt(entry[0].trim());
+            weights[i] = Double.parseDouble(entry[1].trim());
+        }
+        this.cardPrefixTable = new AliasTable(weights);
+
+        logger.info(String.format("Workload profile: products %s, customers %s, amounts %s, card prefixes %s%s",
+                products, customers,
+                logNormalAmount ? String.format("log-normal with median %s and sigma %s up to %s",
+                        Math.exp(amountMu), amountSigma, amountMax) : String.format("uniform in [%s, %s)", amountMin, amountMax),
+                profile.getProperty("card.prefix.weights", "2:1,3:1,4:1"), seed != null ? ", seed " + seed : ""));
+    }
+
+    static boolean isEnabled(Properties props) {
+        return props.getProperty("datagen.profile.file") != null;
+    }
+
+    static WorkloadProfile load(Properties props) {
+        String file = props.getProperty("datagen.profile.file");
+        Properties profile = new Properties();
+        try (InputStream in = Files.exists(Paths.get(file))
+                ? new FileInputStream(file) : WorkloadProfile.class.getClassLoader().getResourceAsStream(file)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Workload profile " + file + " is neither a file nor a resource");
+            }
+            profile.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new WorkloadProfile(profile);
+    }
+
+    /**
+     * The generator of the store, created at its first payment.
+     */
+    Random getRandom(String store) {
+        return randoms.computeIfAbsent(store != null ? store : "",
+                name -> seed != null ? new Random(seed + name.hashCode()) : new Random());
+    }
+
+    int nextProductId(Random random) {
+        return products.sample(random);
+    }
+
+    int nextCustomerId(Random random) {
+        return customers.sample(random);
+    }
+
+    double nextAmount(Random random) {
+        if (!logNormalAmount) {
+            return amountMin + random.nextDouble() * (amountMax - amountMin);
+        }
+        return Math.min(amountMax, Math.exp(amountMu + amountSigma * random.nextGaussian()));
+    }
+
+    int nextCardPrefix(Random random) {
+        return cardPrefixes[cardPrefixTable.sample(random)];
+    }
+}
@@ -0,0 +1,187 @@
+package io.confluent.examples.datacontract.inventory;
+
+import io.confluent.examples.datacontract.utils.ClientsUtils;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.log4j.Logger;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incremental version of the Usecase1 {@code low_stock_alerts} statement. Consumes the Debezium {@code products}
+ * topic, keeps the stock of every product in a {@link LowStockDetector} and writes an alert to
+ * {@code low_stock_alerts} only when a product crosses below the threshold of its category, instead of one for
+ * every change of a product that is already low.
+ *
+ * <p>The stock index lives in memory. By default the app rebuilds it on start by reading its partitions from the
+ * beginning, and emits no alerts for the changes it replays, so a restart neither loses state nor repeats alerts.
+ */
+public class LowStockAlertApp {
+
+    private static final Logger logger = Logger.getLogger(LowStockAlertApp.class);
+
+    // Same record as the one Flink registers for the low_stock_alerts table
+    static final Schema ALERT_SCHEMA = new Schema.Parser().parse("{\"type\":\"record\","
+            + "\"name\":\"low_stock_alerts_value\",\"namespace\":\"org.apache.flink.avro.generated.record\",\"fields\":["
+            + "{\"name\":\"productid\",\"type\":[\"null\",\"int\"],\"default\":null},"
+            + "{\"name\":\"productname\",\"type\":[\"null\",\"string\"],\"default\":null},"
+            + "{\"name\":\"stock\",\"type\":[\"null\",\"int\"],\"default\":null},"
+            + "{\"name\":\"alert_message\",\"type\":[\"null\",\"string\"],\"default\":null}]}");
+
+    private final Properties props;
+    private final String productsTopic;
+    private final String alertsTopic;
+    private final boolean replay;
+    private final LowStockDetector detector;
+    // End offsets at assignment: changes before them are replayed without alerts
+    private final Map<TopicPartition, Long> replayUntil = new HashMap<>();
+    private long sentAlerts;
+    private final AtomicLong failedAlerts = new AtomicLong();
+
+    LowStockAlertApp(Properties props) {
+        this.props = props;
+        this.productsTopic = props.getProperty("lowstock.products.topic", "shiftleft.public.products");
+        this.alertsTopic = props.getProperty("lowstock.alerts.topic", "low_stock_alerts");
+        this.replay = Boolean.parseBoolean(props.getProperty("lowstock.replay.on.start", "true"));
+        this.detector = new LowStockDetector(props);
+        props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "low-stock-alerts");
+        props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.putIfAbsent(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "5000");
+        if (replay) {
+            // The offsets are not needed, the index is rebuilt from the beginning anyway
+            props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        }
+    }
+
+    private Properties consumerConfig() {
+        Properties config = new Properties();
+        config.putAll(props);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "io.confluent.kafka.serializers.KafkaAvroDeserializer");
+        return config;
+    }
+
+    private Properties producerConfig() {
+        Properties config = new Properties();
+        config.putAll(props);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "io.confluent.kafka.serializers.KafkaAvroSerializer");
+        config.putIfAbsent(AbstractKafkaSchemaSerDeConfig.AUTO_REGISTER_SCHEMAS, "true");
+        config.putIfAbsent(ProducerConfig.LINGER_MS_CONFIG, "20");
+        return config;
+    }
+
+    void run() {
+        long reportIntervalMs = Long.parseLong(props.getProperty("lowstock.report.interval.seconds", "10")) * 1000;
+        ClientsUtils.createTopicIfNotExists(props, alertsTopic);
+        try (KafkaConsumer<byte[], Object> consumer = new KafkaConsumer<>(consumerConfig());
+             KafkaProducer<String, Object> producer = new KafkaProducer<>(producerConfig())) {
+            consumer.subscribe(Collections.singletonList(productsTopic), new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    for (TopicPartition partition : partitions) {
+                        replayUntil.remove(partition);
+                    }
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    if (!replay || partitions.isEmpty()) {
+                        return;
+                    }
+                    consumer.seekToBeginning(partitions);
+                    replayUntil.putAll(consumer.endOffsets(partitions));
+                    logger.info("Rebuilding the stock index from " + partitions.size() + " partitions");
+                }
+            });
+            long lastReport = System.currentTimeMillis();
+            long lastUpdates = 0;
+            while (true) {
+                ConsumerRecords<byte[], Object> records = consumer.poll(Duration.ofMillis(500));
+                for (ConsumerRecord<byte[], Object> record : records) {
+                    if (record.value() instanceof GenericRecord) {
+                        process(producer, record);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= reportIntervalMs) {
+                    long updates = detector.getUpdateCount();
+                    logger.info(String.format("%.0f updates/s, %s, sent %d, failed %d",
+                            (updates - lastUpdates) * 1000.0 / (now - lastReport), detector.getSummary(), sentAlerts,
+                            failedAlerts.get()));
+                    lastReport = now;
+                    lastUpdates = updates;
+                }
+            }
+        }
+    }
+
+    private void process(KafkaProducer<String, Object> producer, ConsumerRecord<byte[], Object> record) {
+        // Either the flattened row or a Debezium envelope with the row in "after"
+        GenericRecord value = (GenericRecord) record.value();
+        GenericRecord row = value;
+        if (value.getSchema().getField("after") != null) {
+            row = (GenericRecord) value.get("after");
+            if (row == null) {
+                GenericRecord before = (GenericRecord) value.get("before");
+                if (before != null) {
+                    detector.onDelete(((Number) before.get("productid")).intValue());
+                }
+                return;
+            }
+        }
+        int productId = ((Number) row.get("productid")).intValue();
+        if ("true".equals(String.valueOf(row.get("__deleted")))) {
+            detector.onDelete(productId);
+            return;
+        }
+        int stock = ((Number) row.get("stock")).intValue();
+        int threshold = detector.onStock(productId, String.valueOf(row.get("category")), stock);
+        if (threshold < 0 || isReplayed(record)) {
+            return;
+        }
+        GenericRecord alert = new GenericData.Record(ALERT_SCHEMA);
+        alert.put("productid", productId);
+        alert.put("productname", String.valueOf(row.get("productname")));
+        alert.put("stock", stock);
+        alert.put("alert_message", "Low stock: Quantity below " + threshold + "!");
+        sentAlerts++;
+        producer.send(new ProducerRecord<>(alertsTopic, String.valueOf(productId), alert), (metadata, e) -> {
+            if (e != null && failedAlerts.getAndIncrement() == 0) {
+                logger.error("Failed to write an alert to " + alertsTopic, e);
+            }
+        });
+    }
+
+    private boolean isReplayed(ConsumerRecord<byte[], Object> record) {
+        Long until = replayUntil.get(new TopicPartition(record.topic(), record.partition()));
+        return until != null && record.offset() < until;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            logger.error("Provide the propertiesFile as argument");
+            System.exit(1);
+        }
+        new LowStockAlertApp(ClientsUtils.loadConfig(args[0])).run();
+    }
+}
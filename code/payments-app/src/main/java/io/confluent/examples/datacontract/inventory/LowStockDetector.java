@@ -0,0 +1,124 @@
+package io.confluent.examples.datacontract.inventory;
+
+import io.confluent.examples.datacontract.reference.IntLongHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Tracks the stock of every product and decides when a product becomes low on stock. A product raises an alert
+ * when its stock falls below the threshold of its category, and can only raise the next one after its stock has
+ * recovered to the threshold plus the hysteresis, so a stock that moves around the threshold does not flap.
+ *
+ * <p>The stock and the alert state of a product are packed into one {@code long} of an {@link IntLongHashMap}
+ * keyed by ProductID, about 20 bytes per product. At most {@code lowstock.max.products} products are tracked;
+ * updates of products beyond that are counted and ignored.
+ */
+class LowStockDetector {
+
+    private static final long STOCK_MASK = 0xFFFFFFFFL;
+    private static final long ALERTED = 1L << 32;
+    private static final long MISSING = Long.MIN_VALUE;
+
+    private static final class Thresholds {
+        final int alertBelow;
+        final int clearAt;
+
+        Thresholds(int alertBelow, int hysteresis) {
+            this.alertBelow = alertBelow;
+            this.clearAt = alertBelow + hysteresis;
+        }
+    }
+
+    private final Properties props;
+    private final int defaultThreshold;
+    private final int defaultHysteresis;
+    private final int maxProducts;
+    private final IntLongHashMap index;
+    private final Map<String, Thresholds> categories = new HashMap<>();
+
+    private long updates;
+    private long alerts;
+    private long recoveries;
+    private long untracked;
+    private int lowProducts;
+
+    LowStockDetector(Properties props) {
+        this.props = props;
+        this.defaultThreshold = Integer.parseInt(props.getProperty("lowstock.threshold", "50"));
+        this.defaultHysteresis = Integer.parseInt(props.getProperty("lowstock.hysteresis", "10"));
+        this.maxProducts = Integer.parseInt(props.getProperty("lowstock.max.products", "10000000"));
+        this.index = new IntLongHashMap(Integer.parseInt(props.getProperty("lowstock.expected.products", "100000")));
+    }
+
+    /**
+     * Property suffix of a category: lower case, with every run of other characters than letters and digits
+     * replaced by {@code -}, so {@code Home & Garden} is configured as {@code lowstock.threshold.home-garden}.
+     */
+    static String propertyName(String category) {
+        return category.toLowerCase().replaceAll("[^a-z0-9]+", "-");
+    }
+
+    private Thresholds thresholds(String category) {
+        Thresholds thresholds = categories.get(category);
+        if (thresholds == null) {
+            String name = propertyName(category);
+            thresholds = new Thresholds(
+                    Integer.parseInt(props.getProperty("lowstock.threshold." + name, String.valueOf(defaultThreshold))),
+                    Integer.parseInt(props.getProperty("lowstock.hysteresis." + name, String.valueOf(defaultHysteresis))));
+            categories.put(category, thresholds);
+        }
+        return thresholds;
+    }
+
+    /**
+     * Records the current stock of a product.
+     *
+     * @return the threshold the stock fell below when this update raises an alert, -1 otherwise
+     */
+    int onStock(int productId, String category, int stock) {
+        updates++;
+        long state = index.get(productId, MISSING);
+        if (state == MISSING && index.size() >= maxProducts) {
+            untracked++;
+            return -1;
+        }
+        // A product seen for the first time starts without an alert
+        boolean alerted = state != MISSING && (state & ALERTED) != 0;
+        Thresholds thresholds = thresholds(category);
+        int alertBelow = -1;
+        if (!alerted && stock < thresholds.alertBelow) {
+            alerted = true;
+            alertBelow = thresholds.alertBelow;
+            alerts++;
+            lowProducts++;
+        } else if (alerted && stock >= thresholds.clearAt) {
+            alerted = false;
+            recoveries++;
+            lowProducts--;
+        }
+        index.put(productId, (stock & STOCK_MASK) | (alerted ? ALERTED : 0));
+        return alertBelow;
+    }
+
+    void onDelete(int productId) {
+        updates++;
+        long state = index.get(productId, MISSING);
+        if (state != MISSING) {
+            if ((state & ALERTED) != 0) {
+                lowProducts--;
+            }
+            index.remove(productId);
+        }
+    }
+
+    long getUpdateCount() {
+        return updates;
+    }
+
+    String getSummary() {
+        return String.format("products %d, low %d, crossings %d, recoveries %d, untracked updates %d, index %.1f MB",
+                index.size(), lowProducts, alerts, recoveries, untracked, index.getMemoryBytes() / 1e6);
+    }
+}
@@ -0,0 +1,34 @@
+package io.confluent.examples.datacontract.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Round trip of a record from the call of {@code send} to its acknowledgement: the time in {@code send} (see
+ * {@link SendEvent}), batching, the request to the broker and replication. Started on the producing thread and
+ * committed on the producer's I/O thread.
+ */
+@Name("io.confluent.examples.payments.Ack")
+@Label("Acknowledge")
+@Category({"Payments App", "Producer"})
+@Description("Time from the start of send to the broker acknowledgement")
+@Threshold("10 ms")
+@StackTrace(false)
+public class AckEvent extends jdk.jfr.Event {
+
+    @Label("Topic")
+    public String topic;
+
+    @Label("Partition")
+    public int partition;
+
+    @Label("Offset")
+    public long offset;
+
+    @Label("Failure")
+    public String failure;
+}
@@ -0,0 +1,29 @@
+package io.confluent.examples.datacontract.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Generation of one payment by {@code SalesDataGen}.
+ */
+@Name("io.confluent.examples.payments.GenerateSale")
+@Label("Generate Sale")
+@Category({"Payments App", "Producer"})
+@Description("Generation of a payment, including the wait for a joined order id")
+@Threshold("1 ms")
+@StackTrace(false)
+public class GenerateSaleEvent extends jdk.jfr.Event {
+
+    @Label("Store")
+    public String store;
+
+    @Label("Order Id")
+    public int orderId;
+
+    @Label("Invalid")
+    public boolean invalid;
+}
@@ -0,0 +1,34 @@
+package io.confluent.examples.datacontract.jfr;
+
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * {@link KafkaAvroSerializer} that records a {@link SerializeEvent} for every value, so the cost of the schema
+ * rules shows up apart from the rest of {@code send}. When the event is disabled it only adds a check of a flag.
+ */
+public class RecordedAvroSerializer extends KafkaAvroSerializer {
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object record) {
+        SerializeEvent event = new SerializeEvent();
+        if (!event.isEnabled()) {
+            return super.serialize(topic, headers, record);
+        }
+        event.begin();
+        try {
+            byte[] bytes = super.serialize(topic, headers, record);
+            event.size = bytes == null ? 0 : bytes.length;
+            return bytes;
+        } catch (RuntimeException e) {
+            event.failure = e.getClass().getName();
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.topic = topic;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.confluent.examples.datacontract.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Call of {@code KafkaProducer.send}: metadata wait, serialization, partitioning and the wait for buffer space.
+ */
+@Name("io.confluent.examples.payments.Send")
+@Label("Send")
+@Category({"Payments App", "Producer"})
+@Description("Time in KafkaProducer.send until the record is appended to a batch")
+@Threshold("1 ms")
+@StackTrace(false)
+public class SendEvent extends jdk.jfr.Event {
+
+    @Label("Topic")
+    public String topic;
+
+    @Label("Buffer Wait")
+    @Description("Time blocked on a full producer buffer")
+    @Timespan(Timespan.NANOSECONDS)
+    public long bufferWait;
+}
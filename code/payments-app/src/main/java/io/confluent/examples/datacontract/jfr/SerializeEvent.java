@@ -0,0 +1,33 @@
+package io.confluent.examples.datacontract.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Serialization of one record value by {@link RecordedAvroSerializer}, with the data quality and encryption rules
+ * of its schema.
+ */
+@Name("io.confluent.examples.payments.Serialize")
+@Label("Serialize")
+@Category({"Payments App", "Producer"})
+@Description("Avro serialization of a record value, including the execution of the schema rules such as CEL conditions and field encryption")
+@Threshold("1 ms")
+@StackTrace(false)
+public class SerializeEvent extends jdk.jfr.Event {
+
+    @Label("Topic")
+    public String topic;
+
+    @Label("Size")
+    @DataAmount
+    public int size;
+
+    @Label("Failure")
+    @Description("Exception class when serialization or a rule failed")
+    public String failure;
+}
@@ -0,0 +1,66 @@
+package io.confluent.examples.datacontract.reference;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Writes {@code unique_payments.csv}, {@code completed_orders.csv} and {@code revenue_summary.csv} with the
+ * columns of the Flink tables, timestamps in UTC.
+ */
+public class CsvResultSink implements ResultSink {
+
+    private final BufferedWriter uniquePayments;
+    private final BufferedWriter completedOrders;
+    private final BufferedWriter revenueSummary;
+
+    public CsvResultSink(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        uniquePayments = open(directory.resolve("unique_payments.csv"), "order_id,amount,confirmation_code,ts");
+        completedOrders = open(directory.resolve("completed_orders.csv"), "order_id,amount,confirmation_code,ts");
+        revenueSummary = open(directory.resolve("revenue_summary.csv"), "window_start,window_end,total_revenue");
+    }
+
+    private static BufferedWriter open(Path file, String header) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writer.write(header);
+        writer.newLine();
+        return writer;
+    }
+
+    @Override
+    public void uniquePayment(int orderId, double amount, String confirmationCode, long ts) throws IOException {
+        uniquePayments.write(orderId + "," + amount + "," + confirmationCode + "," + Instant.ofEpochMilli(ts));
+        uniquePayments.newLine();
+    }
+
+    @Override
+    public void completedOrder(int orderId, double amount, String confirmationCode, long ts) throws IOException {
+        completedOrders.write(orderId + "," + amount + "," + confirmationCode + "," + Instant.ofEpochMilli(ts));
+        completedOrders.newLine();
+    }
+
+    @Override
+    public void revenue(long windowStart, long windowEnd, double totalRevenue) throws IOException {
+        // DECIMAL(10, 2) in Flink
+        revenueSummary.write(Instant.ofEpochMilli(windowStart) + "," + Instant.ofEpochMilli(windowEnd) + ","
+                + String.format(Locale.ROOT, "%.2f", totalRevenue));
+        revenueSummary.newLine();
+        // Windows are few and are what gets compared first, so make them visible right away
+        revenueSummary.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            uniquePayments.close();
+            completedOrders.close();
+        } finally {
+            revenueSummary.close();
+        }
+    }
+}
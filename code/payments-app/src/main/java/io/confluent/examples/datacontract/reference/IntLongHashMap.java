@@ -0,0 +1,133 @@
+package io.confluent.examples.datacontract.reference;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from {@code int} to {@code long} without boxing, with linear probing and
+ * backward-shift deletion so removals leave no tombstones. {@link Integer#MIN_VALUE} cannot be used as a key.
+ */
+public class IntLongHashMap {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final double MAX_LOAD = 0.6;
+
+    private int[] keys;
+    private long[] values;
+    private int mask;
+    private int shift;
+    private int size;
+
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new long[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(mask);
+    }
+
+    private int slot(int key) {
+        // Fibonacci hashing: the high bits of the product spread sequential order ids across the table
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    public boolean containsKey(int key) {
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long get(int key, long defaultValue) {
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return defaultValue;
+    }
+
+    public void put(int key, long value) {
+        int i = slot(key);
+        for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * MAX_LOAD) {
+            resize();
+        }
+    }
+
+    public boolean remove(int key) {
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes every entry whose value is below the threshold and returns how many were removed.
+     */
+    public int removeValuesBelow(long threshold) {
+        int removed = 0;
+        for (int i = 0; i < keys.length; ) {
+            if (keys[i] != EMPTY && values[i] < threshold) {
+                // The shift may move another entry into this slot, so look at it again
+                removeAt(i);
+                removed++;
+            } else {
+                i++;
+            }
+        }
+        return removed;
+    }
+
+    private void removeAt(int i) {
+        size--;
+        int gap = i;
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            // Move the entry back into the gap unless its home slot lies cyclically in (gap, j]
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Bytes held by the key and value arrays. */
+    public long getMemoryBytes() {
+        return (long) keys.length * (Integer.BYTES + Long.BYTES);
+    }
+}
@@ -0,0 +1,128 @@
+package io.confluent.examples.datacontract.reference;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Open-addressing hash map from {@code int} to an object, the counterpart of {@link IntLongHashMap} for
+ * values that do not fit a {@code long}. {@link Integer#MIN_VALUE} cannot be used as a key.
+ */
+public class IntObjectHashMap<V> {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final double MAX_LOAD = 0.6;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int shift;
+    private int size;
+
+    public IntObjectHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(mask);
+    }
+
+    private int slot(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    public void put(int key, V value) {
+        int i = slot(key);
+        for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * MAX_LOAD) {
+            resize();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V value = (V) values[i];
+                removeAt(i);
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes every entry whose value matches and returns how many were removed.
+     */
+    @SuppressWarnings("unchecked")
+    public int removeIf(Predicate<? super V> predicate) {
+        int removed = 0;
+        for (int i = 0; i < keys.length; ) {
+            if (keys[i] != EMPTY && predicate.test((V) values[i])) {
+                removeAt(i);
+                removed++;
+            } else {
+                i++;
+            }
+        }
+        return removed;
+    }
+
+    private void removeAt(int i) {
+        size--;
+        int gap = i;
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Bytes held by the key and reference arrays, not counting the values themselves. */
+    public long getMemoryBytes() {
+        return (long) keys.length * (Integer.BYTES + 8);
+    }
+}
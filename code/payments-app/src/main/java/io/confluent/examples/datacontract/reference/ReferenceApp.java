@@ -0,0 +1,124 @@
+package io.confluent.examples.datacontract.reference;
+
+import io.confluent.examples.datacontract.utils.ClientsUtils;
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Consumes {@code payments} and the Debezium {@code orders} topic and runs them through a
+ * {@link ReferenceEngine}, writing the results as CSV files to compare with the Flink tables.
+ * Takes the same properties file as {@code ProducerApp}.
+ */
+public class ReferenceApp {
+
+    private static final Logger logger = Logger.getLogger(ReferenceApp.class);
+
+    private final Properties props;
+    private final String paymentsTopic;
+    private final String ordersTopic;
+
+    ReferenceApp(Properties props) {
+        this.props = props;
+        this.paymentsTopic = props.getProperty("reference.payments.topic", "payments");
+        this.ordersTopic = props.getProperty("reference.orders.topic", "shiftleft.public.orders");
+        props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "payments-reference-engine");
+        props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "io.confluent.kafka.serializers.KafkaAvroDeserializer");
+    }
+
+    void run() throws IOException {
+        long reportIntervalMs = Long.parseLong(props.getProperty("reference.report.interval.seconds", "10")) * 1000;
+        try (ResultSink sink = new CsvResultSink(Paths.get(props.getProperty("reference.output.dir", "reference-output")));
+             KafkaConsumer<byte[], Object> consumer = new KafkaConsumer<>(props)) {
+            ReferenceEngine engine = new ReferenceEngine(sink);
+            consumer.subscribe(Arrays.asList(paymentsTopic, ordersTopic));
+            long lastReport = System.currentTimeMillis();
+            long lastEvents = 0;
+            while (true) {
+                ConsumerRecords<byte[], Object> records = consumer.poll(Duration.ofMillis(500));
+                for (ConsumerRecord<byte[], Object> record : records) {
+                    if (record.value() instanceof GenericRecord) {
+                        process(engine, record);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= reportIntervalMs) {
+                    long events = engine.getEventCount();
+                    logger.info(String.format("%.0f events/s, %s", (events - lastEvents) * 1000.0 / (now - lastReport), engine.getSummary()));
+                    lastReport = now;
+                    lastEvents = events;
+                }
+            }
+        }
+    }
+
+    private void process(ReferenceEngine engine, ConsumerRecord<byte[], Object> record) throws IOException {
+        GenericRecord value = (GenericRecord) record.value();
+        if (record.topic().equals(paymentsTopic)) {
+            engine.onPayment(((Number) value.get("order_id")).intValue(), ((Number) value.get("amount")).doubleValue(),
+                    String.valueOf(value.get("confirmation_code")), toMillis(value, "ts"), record.timestamp());
+            return;
+        }
+        // Either the flattened row or a Debezium envelope with the row in "after"
+        GenericRecord row = value;
+        if (value.getSchema().getField("after") != null) {
+            row = (GenericRecord) value.get("after");
+        }
+        if (row == null || "true".equals(String.valueOf(row.get("__deleted")))) {
+            return;
+        }
+        engine.onOrder(((Number) row.get("orderid")).intValue(), toMillis(row, "orderdate"));
+    }
+
+    /**
+     * Epoch milliseconds of a timestamp field, whichever precision Avro or Debezium encoded it with.
+     */
+    static long toMillis(GenericRecord record, String field) {
+        Object value = record.get(field);
+        if (value instanceof Instant) {
+            return ((Instant) value).toEpochMilli();
+        }
+        long raw = ((Number) value).longValue();
+        Schema schema = record.getSchema().getField(field).schema();
+        if (schema.getType() == Schema.Type.UNION) {
+            for (Schema branch : schema.getTypes()) {
+                if (branch.getType() != Schema.Type.NULL) {
+                    schema = branch;
+                }
+            }
+        }
+        LogicalType logicalType = schema.getLogicalType();
+        String connectName = schema.getProp("connect.name");
+        if ("io.debezium.time.NanoTimestamp".equals(connectName)) {
+            return raw / 1_000_000;
+        }
+        if ("io.debezium.time.MicroTimestamp".equals(connectName)
+                || (logicalType != null && logicalType.getName().equals("timestamp-micros"))) {
+            return raw / 1_000;
+        }
+        return raw;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            logger.error("Provide the propertiesFile as argument");
+            System.exit(1);
+        }
+        new ReferenceApp(ClientsUtils.loadConfig(args[0])).run();
+    }
+}
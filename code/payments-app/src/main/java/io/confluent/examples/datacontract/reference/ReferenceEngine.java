@@ -0,0 +1,186 @@
+package io.confluent.examples.datacontract.reference;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Single-threaded, incremental version of the Usecase3 Flink pipeline, used as an oracle for its output:
+ * <ul>
+ *     <li>{@code unique_payments}: the first payment per {@code order_id} by record time, keys expiring after
+ *     the 1 hour {@code sql.state-ttl}.</li>
+ *     <li>{@code completed_orders}: unique payments joined to orders with
+ *     {@code orderdate BETWEEN pymt.ts - INTERVAL '96' HOUR AND pymt.ts}.</li>
+ *     <li>{@code revenue_summary}: the sum of completed amounts per 5 second tumbling window on {@code ts}, with
+ *     the {@code ts - INTERVAL '5' SECOND} watermark of {@code completed_orders}. Late rows are dropped.</li>
+ * </ul>
+ * Each input keeps its own watermark (largest time seen minus 5 seconds). A payment waiting for its order is
+ * dropped once the order watermark passes its {@code ts}; an order waiting for its payment once the payment
+ * watermark passes {@code orderdate} plus 96 hours.
+ */
+public class ReferenceEngine {
+
+    static final long DEDUP_TTL_MS = 3_600_000L;
+    static final long JOIN_INTERVAL_MS = 96 * 3_600_000L;
+    static final long WATERMARK_DELAY_MS = 5_000L;
+    static final long WINDOW_MS = 5_000L;
+
+    // Start value of the watermarks, far enough from Long.MIN_VALUE to subtract the join interval
+    private static final long NO_WATERMARK = Long.MIN_VALUE / 2;
+
+    // Expired state is swept after this many events, a full pass over flat arrays
+    private static final int EVICTION_INTERVAL = 1 << 16;
+
+    private static final class Payment {
+        final double amount;
+        final String confirmationCode;
+        final long ts;
+
+        Payment(double amount, String confirmationCode, long ts) {
+            this.amount = amount;
+            this.confirmationCode = confirmationCode;
+            this.ts = ts;
+        }
+    }
+
+    private final ResultSink sink;
+
+    // order_id -> record time of the first payment, for deduplication
+    private final IntLongHashMap seenPayments = new IntLongHashMap(1 << 16);
+    // order_id -> unique payment whose order has not arrived yet
+    private final IntObjectHashMap<Payment> pendingPayments = new IntObjectHashMap<>(1 << 12);
+    // order_id -> orderdate of orders that have no payment yet
+    private final IntLongHashMap pendingOrders = new IntLongHashMap(1 << 16);
+    // window start -> revenue, only for windows the watermark has not closed yet
+    private final TreeMap<Long, double[]> openWindows = new TreeMap<>();
+
+    private long maxRecordTime = NO_WATERMARK;
+    private long paymentWatermark = NO_WATERMARK;
+    private long orderWatermark = NO_WATERMARK;
+    private long completedWatermark = NO_WATERMARK;
+    private int eventsSinceEviction;
+
+    private long payments;
+    private long duplicates;
+    private long orders;
+    private long completed;
+    private long lateCompleted;
+    private long expiredPayments;
+    private long expiredOrders;
+
+    public ReferenceEngine(ResultSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * @param recordTime the Kafka record timestamp, Flink's {@code $rowtime}
+     */
+    public void onPayment(int orderId, double amount, String confirmationCode, long ts, long recordTime) throws IOException {
+        payments++;
+        maxRecordTime = Math.max(maxRecordTime, recordTime);
+        if (seenPayments.containsKey(orderId)) {
+            duplicates++;
+            maybeEvict();
+            return;
+        }
+        seenPayments.put(orderId, recordTime);
+        sink.uniquePayment(orderId, amount, confirmationCode, ts);
+        paymentWatermark = Math.max(paymentWatermark, ts - WATERMARK_DELAY_MS);
+
+        long orderDate = pendingOrders.get(orderId, Long.MIN_VALUE);
+        if (orderDate != Long.MIN_VALUE && matches(orderDate, ts)) {
+            pendingOrders.remove(orderId);
+            complete(orderId, amount, confirmationCode, ts);
+        } else {
+            pendingPayments.put(orderId, new Payment(amount, confirmationCode, ts));
+        }
+        maybeEvict();
+    }
+
+    /**
+     * Inserts and updates of an order; an order that already completed is not joined again.
+     */
+    public void onOrder(int orderId, long orderDate) throws IOException {
+        orders++;
+        orderWatermark = Math.max(orderWatermark, orderDate - WATERMARK_DELAY_MS);
+        Payment payment = pendingPayments.get(orderId);
+        if (payment != null && matches(orderDate, payment.ts)) {
+            pendingPayments.remove(orderId);
+            complete(orderId, payment.amount, payment.confirmationCode, payment.ts);
+        } else if (orderDate >= paymentWatermark - JOIN_INTERVAL_MS) {
+            pendingOrders.put(orderId, orderDate);
+        }
+        maybeEvict();
+    }
+
+    private static boolean matches(long orderDate, long ts) {
+        return orderDate >= ts - JOIN_INTERVAL_MS && orderDate <= ts;
+    }
+
+    private void complete(int orderId, double amount, String confirmationCode, long ts) throws IOException {
+        sink.completedOrder(orderId, amount, confirmationCode, ts);
+        completed++;
+        long windowStart = Math.floorDiv(ts, WINDOW_MS) * WINDOW_MS;
+        if (windowStart + WINDOW_MS <= completedWatermark) {
+            lateCompleted++;
+            return;
+        }
+        double[] revenue = openWindows.get(windowStart);
+        if (revenue == null) {
+            revenue = new double[1];
+            openWindows.put(windowStart, revenue);
+        }
+        revenue[0] += amount;
+
+        if (ts - WATERMARK_DELAY_MS > completedWatermark) {
+            completedWatermark = ts - WATERMARK_DELAY_MS;
+            fireWindows();
+        }
+    }
+
+    private void fireWindows() throws IOException {
+        Iterator<Map.Entry<Long, double[]>> windows = openWindows.entrySet().iterator();
+        while (windows.hasNext()) {
+            Map.Entry<Long, double[]> window = windows.next();
+            long windowEnd = window.getKey() + WINDOW_MS;
+            if (windowEnd > completedWatermark) {
+                break;
+            }
+            sink.revenue(window.getKey(), windowEnd, window.getValue()[0]);
+            windows.remove();
+        }
+    }
+
+    private void maybeEvict() {
+        if (++eventsSinceEviction < EVICTION_INTERVAL) {
+            return;
+        }
+        eventsSinceEviction = 0;
+        seenPayments.removeValuesBelow(maxRecordTime - DEDUP_TTL_MS);
+        long orderWatermark = this.orderWatermark;
+        expiredPayments += pendingPayments.removeIf(payment -> payment.ts < orderWatermark);
+        expiredOrders += pendingOrders.removeValuesBelow(paymentWatermark - JOIN_INTERVAL_MS);
+    }
+
+    /** Rough heap used by the state, to size the Flink job. */
+    public long getStateBytes() {
+        // A pending payment is an object header, a double, a long and a reference to a short string
+        return seenPayments.getMemoryBytes() + pendingOrders.getMemoryBytes()
+                + pendingPayments.getMemoryBytes() + pendingPayments.size() * 80L
+                + openWindows.size() * 100L;
+    }
+
+    public String getSummary() {
+        return String.format("%d payments (%d duplicates), %d order events, %d completed (%d late), "
+                        + "state: %d payment keys, %d pending payments, %d pending orders, %d open windows, ~%d KB, "
+                        + "expired %d payments and %d orders without a match",
+                payments, duplicates, orders, completed, lateCompleted,
+                seenPayments.size(), pendingPayments.size(), pendingOrders.size(), openWindows.size(), getStateBytes() / 1024,
+                expiredPayments, expiredOrders);
+    }
+
+    public long getEventCount() {
+        return payments + orders;
+    }
+}
@@ -0,0 +1,18 @@
+package io.confluent.examples.datacontract.reference;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows {@link ReferenceEngine} computes for the three Flink tables.
+ */
+public interface ResultSink extends AutoCloseable {
+
+    void uniquePayment(int orderId, double amount, String confirmationCode, long ts) throws IOException;
+
+    void completedOrder(int orderId, double amount, String confirmationCode, long ts) throws IOException;
+
+    void revenue(long windowStart, long windowEnd, double totalRevenue) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
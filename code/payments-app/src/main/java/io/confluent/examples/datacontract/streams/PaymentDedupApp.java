@@ -0,0 +1,218 @@
+package io.confluent.examples.datacontract.streams;
+
+import io.confluent.examples.datacontract.utils.ClientsUtils;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.apache.log4j.Logger;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kafka Streams counterpart of the Flink {@code unique_payments} statement: forwards the first payment per
+ * {@code order_id} and drops the ones that follow within {@code dedup.retention.minutes} (default 60, the
+ * {@code sql.state-ttl} of the Flink job) of record time.
+ *
+ * <p>Payments are repartitioned by {@code order_id} so any number of instances can share the work, and the
+ * seen ids live in a window store whose retention bounds the state. Until then values stay in their serialized
+ * form: the order id is read straight from the Avro bytes, so duplicates are dropped without being decoded.
+ *
+ * <p>The first payment per order is then deserialized with the {@code payments-value} schema and serialized again
+ * for the output topic, so its records carry the schema id of the {@code <output topic>-value} subject, and are
+ * written without a key. The schema is registered on first use; set {@code use.latest.version=true} and
+ * {@code auto.register.schemas=false} to write with the schema already in that subject instead. The rules of
+ * both subjects apply: {@code cc_number} is decrypted on read and stays encrypted in the output only when the
+ * output subject has the {@code pci_encrypt} rule too.
+ */
+public class PaymentDedupApp {
+
+    private static final Logger logger = Logger.getLogger(PaymentDedupApp.class);
+
+    static final String STORE_NAME = "payment-dedup-store";
+
+    // Confluent wire format: magic byte and 4 byte schema id before the Avro payload
+    private static final int WIRE_HEADER_LENGTH = 5;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    private final Properties props;
+    private final String inputTopic;
+    private final String outputTopic;
+    private final Duration retention;
+
+    PaymentDedupApp(Properties props) {
+        this.props = props;
+        this.inputTopic = props.getProperty("dedup.input.topic", "payments");
+        this.outputTopic = props.getProperty("dedup.output.topic", "unique_payments");
+        this.retention = Duration.ofMinutes(Long.parseLong(props.getProperty("dedup.retention.minutes", "60")));
+        props.putIfAbsent(StreamsConfig.APPLICATION_ID_CONFIG, "payments-dedup");
+        props.putIfAbsent(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, "1");
+    }
+
+    /**
+     * Reads the {@code order_id}, the first field of {@code payments-value.avsc}, from a serialized payment.
+     */
+    static int readOrderId(byte[] value) {
+        // Avro ints are zig-zag encoded varints
+        int raw = 0;
+        for (int shift = 0, i = WIRE_HEADER_LENGTH; shift < 32; shift += 7, i++) {
+            byte b = value[i];
+            raw |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return (raw >>> 1) ^ -(raw & 1);
+            }
+        }
+        throw new IllegalArgumentException("Invalid order_id encoding");
+    }
+
+    static boolean isSerializedPayment(byte[] value) {
+        if (value == null || value.length <= WIRE_HEADER_LENGTH || value[0] != 0) {
+            logger.warn("Skipping a payment that is not in the Schema Registry wire format");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Avro serde for the payments values, configured from the app properties for the Schema Registry and the
+     * rule executors.
+     */
+    Serde<Object> paymentSerde() {
+        Map<String, Object> config = new HashMap<>();
+        props.forEach((key, value) -> config.put((String) key, value));
+        config.putIfAbsent(AbstractKafkaSchemaSerDeConfig.AUTO_REGISTER_SCHEMAS, "true");
+        Serde<Object> serde = Serdes.serdeFrom(new KafkaAvroSerializer(), new KafkaAvroDeserializer());
+        serde.configure(config, false);
+        return serde;
+    }
+
+    Topology buildTopology() {
+        Serde<Object> payments = paymentSerde();
+        StreamsBuilder builder = new StreamsBuilder();
+        builder.addStateStore(Stores.windowStoreBuilder(
+                Stores.persistentWindowStore(STORE_NAME, retention, retention, false),
+                Serdes.Integer(), Serdes.Long()));
+
+        builder.stream(inputTopic, Consumed.with(Serdes.ByteArray(), Serdes.ByteArray()))
+                .filter((key, value) -> isSerializedPayment(value))
+                .selectKey((key, value) -> readOrderId(value))
+                .repartition(Repartitioned.with(Serdes.Integer(), Serdes.ByteArray()).withName("payments-by-order-id"))
+                .process(() -> new DedupProcessor(), STORE_NAME)
+                // Re-encoded for the subject of the output topic
+                .mapValues(value -> payments.serializer().serialize(outputTopic,
+                        payments.deserializer().deserialize(inputTopic, value)))
+                .selectKey((key, value) -> (byte[]) null)
+                .to(outputTopic, Produced.with(Serdes.ByteArray(), Serdes.ByteArray()));
+        return builder.build();
+    }
+
+    private class DedupProcessor implements Processor<Integer, byte[], Integer, byte[]> {
+
+        private ProcessorContext<Integer, byte[]> context;
+        private WindowStore<Integer, Long> seen;
+
+        @Override
+        public void init(ProcessorContext<Integer, byte[]> context) {
+            this.context = context;
+            this.seen = context.getStateStore(STORE_NAME);
+        }
+
+        @Override
+        public void process(Record<Integer, byte[]> record) {
+            processed.incrementAndGet();
+            long timestamp = record.timestamp();
+            long window = retention.toMillis();
+            try (WindowStoreIterator<Long> earlier = seen.fetch(record.key(), timestamp - window, timestamp + window)) {
+                if (earlier.hasNext()) {
+                    duplicates.incrementAndGet();
+                    return;
+                }
+            }
+            seen.put(record.key(), timestamp, timestamp);
+            context.forward(record);
+        }
+    }
+
+    /**
+     * Sum of a state store metric over all tasks of this instance.
+     */
+    private static double storeMetric(KafkaStreams streams, String name) {
+        double total = 0;
+        for (Map.Entry<MetricName, ? extends Metric> metric : streams.metrics().entrySet()) {
+            MetricName metricName = metric.getKey();
+            if (metricName.name().equals(name) && metricName.group().equals("stream-state-metrics")
+                    && metricName.tags().containsValue(STORE_NAME)) {
+                Object value = metric.getValue().metricValue();
+                if (value instanceof Number) {
+                    total += ((Number) value).doubleValue();
+                }
+            }
+        }
+        return total;
+    }
+
+    void run() throws InterruptedException {
+        KafkaStreams streams = new KafkaStreams(buildTopology(), props);
+        CountDownLatch stopped = new CountDownLatch(1);
+        long reportIntervalSeconds = Long.parseLong(props.getProperty("dedup.report.interval.seconds", "10"));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dedup-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] last = new long[2];
+        reporter.scheduleAtFixedRate(() -> {
+            long total = processed.get();
+            long dropped = duplicates.get();
+            logger.info(String.format("Dedup: %.0f payments/s, %.0f duplicates/s, %d processed, %d duplicates, "
+                            + "store ~%.0f keys, %.0f bytes on disk, state %s",
+                    (total - last[0]) / (double) reportIntervalSeconds, (dropped - last[1]) / (double) reportIntervalSeconds,
+                    total, dropped, storeMetric(streams, "estimate-num-keys"), storeMetric(streams, "total-sst-files-size"),
+                    streams.state()));
+            last[0] = total;
+            last[1] = dropped;
+        }, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            streams.close(Duration.ofSeconds(30));
+            stopped.countDown();
+        }));
+        streams.start();
+        stopped.await();
+        reporter.shutdownNow();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            logger.error("Provide the propertiesFile as argument");
+            System.exit(1);
+        }
+        new PaymentDedupApp(ClientsUtils.loadConfig(args[0])).run();
+    }
+}
@@ -0,0 +1,53 @@
+package io.confluent.examples.datacontract.tracing;
+
+/**
+ * Reads the leading fields of a serialized Avro record in the Confluent wire format without decoding the rest, so
+ * the tracer does not pay for a full deserialization, a Schema Registry lookup or the decryption of
+ * {@code cc_number} to get an order id.
+ */
+class AvroBinaryReader {
+
+    // Confluent wire format: magic byte and 4 byte schema id before the Avro payload
+    private static final int WIRE_HEADER_LENGTH = 5;
+
+    private final byte[] value;
+    private int position;
+
+    AvroBinaryReader(byte[] value) {
+        this.value = value;
+        this.position = WIRE_HEADER_LENGTH;
+    }
+
+    /**
+     * Reads the branch of a {@code ["null", T]} union and tells whether the value is null.
+     */
+    boolean readNull() {
+        return readLong() == 0;
+    }
+
+    int readInt() {
+        return (int) readLong();
+    }
+
+    long readLong() {
+        // Zig-zag encoded varint
+        long raw = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = value[position++];
+            raw |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return (raw >>> 1) ^ -(raw & 1);
+            }
+        }
+        throw new IllegalArgumentException("Invalid varint encoding");
+    }
+
+    void skipString() {
+        int length = (int) readLong();
+        position += length;
+    }
+
+    void skipDouble() {
+        position += Double.BYTES;
+    }
+}
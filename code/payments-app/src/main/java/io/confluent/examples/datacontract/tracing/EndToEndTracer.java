@@ -0,0 +1,265 @@
+package io.confluent.examples.datacontract.tracing;
+
+import io.confluent.examples.datacontract.reference.IntLongHashMap;
+import io.confluent.examples.datacontract.reference.IntObjectHashMap;
+import io.confluent.examples.datacontract.utils.ClientsUtils;
+import io.confluent.examples.datacontract.utils.LatencyHistogram;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a payment takes from its generation in {@code ProducerApp} to each stage of the Usecase3
+ * pipeline: {@code payments}, {@code unique_payments}, {@code completed_orders} and {@code revenue_summary}.
+ * The generation time and trace id come from the {@link TraceHeaders} of the payment. The Flink tables do not
+ * carry the headers over, so downstream records are matched to their payment by {@code order_id}, and a
+ * {@code revenue_summary} window to the latest payment whose {@code ts} falls in it.
+ *
+ * <p>Only a sample of the order ids is traced, chosen by a hash of the id so that every stage picks the same
+ * ones. Records outside the sample are skipped after reading the order id from their bytes, which keeps the
+ * tracer cheap next to the pipeline it measures. Latencies are taken at the time the tracer receives a record,
+ * so the clocks of the producer and tracer hosts must be in sync.
+ */
+public class EndToEndTracer {
+
+    private static final Logger logger = Logger.getLogger(EndToEndTracer.class);
+
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    enum Stage {
+        PAYMENTS("payments", false),
+        UNIQUE_PAYMENTS("unique_payments", false),
+        COMPLETED_ORDERS("completed_orders", true),
+        REVENUE_SUMMARY("revenue_summary", true);
+
+        final String defaultTopic;
+        // Whether the first field is a ["null", T] union, as in the tables declared in Flink SQL
+        final boolean defaultNullable;
+
+        Stage(String defaultTopic, boolean defaultNullable) {
+            this.defaultTopic = defaultTopic;
+            this.defaultNullable = defaultNullable;
+        }
+
+        String propertyName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final class Trace {
+        long traceId;
+        long generatedMicros = UNKNOWN;
+        // Downstream records that arrived before their payment
+        final long[] arrivedMicros = new long[Stage.values().length];
+        long touchedMicros;
+    }
+
+    private static final class StageStats {
+        final String topic;
+        final boolean nullable;
+        LatencyHistogram latency = new LatencyHistogram();
+        long slowestMicros = -1;
+        String slowest;
+
+        StageStats(String topic, boolean nullable) {
+            this.topic = topic;
+            this.nullable = nullable;
+        }
+    }
+
+    private final Properties props;
+    private final double sampleRatio;
+    private final long windowMillis;
+    private final long retentionMicros;
+    private final Map<String, Stage> stagesByTopic = new HashMap<>();
+    private final StageStats[] stats = new StageStats[Stage.values().length];
+    private final IntObjectHashMap<Trace> traces = new IntObjectHashMap<>(1024);
+    // Latest generation time of the sampled payments in each revenue window, keyed by window number
+    private final IntLongHashMap windows = new IntLongHashMap(1024);
+    private long missingHeaders;
+
+    EndToEndTracer(Properties props) {
+        this.props = props;
+        this.sampleRatio = Double.parseDouble(props.getProperty("trace.sample.ratio", "0.01"));
+        this.windowMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(props.getProperty("trace.revenue.window.seconds", "5")));
+        this.retentionMicros = TimeUnit.MINUTES.toMicros(Long.parseLong(props.getProperty("trace.retention.minutes", "15")));
+        for (Stage stage : Stage.values()) {
+            String topic = props.getProperty("trace." + stage.propertyName() + ".topic", stage.defaultTopic);
+            boolean nullable = Boolean.parseBoolean(props.getProperty("trace." + stage.propertyName() + ".nullable",
+                    String.valueOf(stage.defaultNullable)));
+            stats[stage.ordinal()] = new StageStats(topic, nullable);
+            stagesByTopic.put(topic, stage);
+        }
+        props.putIfAbsent(ConsumerConfig.GROUP_ID_CONFIG, "payments-e2e-tracer");
+        // Only new records: old ones would show the age of the topic, not the latency of the pipeline
+        props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+    }
+
+    /**
+     * Whether an order id is in the sample, the same answer for every stage.
+     */
+    boolean isSampled(int orderId) {
+        // Fibonacci hashing spreads sequential order ids; the top 24 bits decide
+        return ((orderId * 0x9E3779B97F4A7C15L) >>> 40) < sampleRatio * (1 << 24);
+    }
+
+    void run() {
+        long reportIntervalMs = Long.parseLong(props.getProperty("trace.report.interval.seconds", "10")) * 1000;
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props)) {
+            consumer.subscribe(new ArrayList<>(stagesByTopic.keySet()));
+            long lastReport = System.currentTimeMillis();
+            while (true) {
+                ConsumerRecords<byte[], byte[]> records = consumer.poll(Duration.ofMillis(500));
+                long receivedMicros = TraceHeaders.epochMicros();
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    if (record.value() != null) {
+                        process(stagesByTopic.get(record.topic()), record, receivedMicros);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= reportIntervalMs) {
+                    report((now - lastReport) / 1000.0);
+                    expire(receivedMicros - retentionMicros);
+                    lastReport = now;
+                }
+            }
+        }
+    }
+
+    void process(Stage stage, ConsumerRecord<byte[], byte[]> record, long receivedMicros) {
+        AvroBinaryReader reader = new AvroBinaryReader(record.value());
+        if (stats[stage.ordinal()].nullable && reader.readNull()) {
+            return;
+        }
+        if (stage == Stage.REVENUE_SUMMARY) {
+            onWindow(reader.readLong(), receivedMicros);
+            return;
+        }
+        int orderId = reader.readInt();
+        if (!isSampled(orderId)) {
+            return;
+        }
+        Trace trace = traces.get(orderId);
+        if (trace == null) {
+            trace = new Trace();
+            traces.put(orderId, trace);
+        }
+        trace.touchedMicros = receivedMicros;
+        if (stage == Stage.PAYMENTS) {
+            onPayment(orderId, trace, record, reader, receivedMicros);
+        } else if (trace.arrivedMicros[stage.ordinal()] == 0) {
+            trace.arrivedMicros[stage.ordinal()] = receivedMicros;
+            if (trace.generatedMicros != UNKNOWN) {
+                recordLatency(stage, orderId, trace, receivedMicros);
+            }
+        }
+    }
+
+    private void onPayment(int orderId, Trace trace, ConsumerRecord<byte[], byte[]> record, AvroBinaryReader reader,
+                           long receivedMicros) {
+        if (trace.generatedMicros != UNKNOWN) {
+            // A duplicate: unique_payments keeps the first one
+            return;
+        }
+        long generatedMicros = TraceHeaders.getLong(record.headers(), TraceHeaders.GENERATED_AT, UNKNOWN);
+        if (generatedMicros == UNKNOWN) {
+            // Produced without trace.enabled: the record timestamp is the closest to the generation time
+            missingHeaders++;
+            generatedMicros = TimeUnit.MILLISECONDS.toMicros(record.timestamp());
+        }
+        trace.generatedMicros = generatedMicros;
+        trace.traceId = TraceHeaders.getLong(record.headers(), TraceHeaders.TRACE_ID, 0);
+        recordLatency(Stage.PAYMENTS, orderId, trace, receivedMicros);
+        for (Stage stage : Stage.values()) {
+            long arrived = trace.arrivedMicros[stage.ordinal()];
+            if (stage != Stage.PAYMENTS && arrived != 0) {
+                recordLatency(stage, orderId, trace, arrived);
+            }
+        }
+
+        // product_id, customer_id, confirmation_code, cc_number, expiration and amount come before ts
+        reader.readInt();
+        reader.readInt();
+        reader.skipString();
+        reader.skipString();
+        reader.skipString();
+        reader.skipDouble();
+        int window = (int) Math.floorDiv(reader.readLong(), windowMillis);
+        if (windows.get(window, UNKNOWN) < generatedMicros) {
+            windows.put(window, generatedMicros);
+        }
+    }
+
+    private void onWindow(long windowStartMillis, long receivedMicros) {
+        int window = (int) Math.floorDiv(windowStartMillis, windowMillis);
+        long generatedMicros = windows.get(window, UNKNOWN);
+        if (generatedMicros == UNKNOWN) {
+            return;
+        }
+        windows.remove(window);
+        StageStats stage = stats[Stage.REVENUE_SUMMARY.ordinal()];
+        long latencyMicros = receivedMicros - generatedMicros;
+        stage.latency.record(TimeUnit.MICROSECONDS.toNanos(Math.max(0, latencyMicros)));
+        if (latencyMicros > stage.slowestMicros) {
+            stage.slowestMicros = latencyMicros;
+            stage.slowest = "window " + windowStartMillis;
+        }
+    }
+
+    private void recordLatency(Stage stage, int orderId, Trace trace, long arrivedMicros) {
+        StageStats stageStats = stats[stage.ordinal()];
+        long latencyMicros = arrivedMicros - trace.generatedMicros;
+        stageStats.latency.record(TimeUnit.MICROSECONDS.toNanos(Math.max(0, latencyMicros)));
+        if (latencyMicros > stageStats.slowestMicros) {
+            stageStats.slowestMicros = latencyMicros;
+            stageStats.slowest = "order " + orderId + " trace " + Long.toHexString(trace.traceId);
+        }
+    }
+
+    private void expire(long cutoffMicros) {
+        traces.removeIf(trace -> trace.touchedMicros < cutoffMicros);
+        windows.removeValuesBelow(cutoffMicros);
+    }
+
+    /**
+     * Logs the latency of each stage since the last report and starts new histograms.
+     */
+    private void report(double seconds) {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("End-to-end latency over %.0f s, sample ratio %s, %d traces, %d payments without headers",
+                seconds, sampleRatio, traces.size(), missingHeaders));
+        lines.add(String.format("%-18s %8s %10s %10s %10s  %s", "stage", "samples", "p50 ms", "p99 ms", "max ms", "slowest"));
+        for (Stage stage : Stage.values()) {
+            StageStats stageStats = stats[stage.ordinal()];
+            LatencyHistogram latency = stageStats.latency;
+            lines.add(String.format("%-18s %8d %10.1f %10.1f %10.1f  %s", stageStats.topic, latency.getCount(),
+                    latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6,
+                    stageStats.slowest == null ? "" : stageStats.slowest));
+            stageStats.latency = new LatencyHistogram();
+            stageStats.slowestMicros = -1;
+            stageStats.slowest = null;
+        }
+        logger.info(String.join(System.lineSeparator(), lines));
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            logger.error("Provide the propertiesFile as argument");
+            System.exit(1);
+        }
+        new EndToEndTracer(ClientsUtils.loadConfig(args[0])).run();
+    }
+}
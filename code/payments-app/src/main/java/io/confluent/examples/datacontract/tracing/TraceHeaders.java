@@ -0,0 +1,57 @@
+package io.confluent.examples.datacontract.tracing;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Record headers that trace a payment through the pipeline: {@value #TRACE_ID}, a random 64-bit id, and
+ * {@value #GENERATED_AT}, the wall-clock time the payment was generated in epoch microseconds. Both are 8-byte
+ * big-endian longs. They are added by {@code ProducerApp} when {@code trace.enabled} is set and read by
+ * {@link EndToEndTracer}.
+ */
+public class TraceHeaders {
+
+    public static final String TRACE_ID = "trace-id";
+    public static final String GENERATED_AT = "trace-generated-at";
+
+    private TraceHeaders() {
+    }
+
+    public static boolean isEnabled(Properties props) {
+        return Boolean.parseBoolean(props.getProperty("trace.enabled", "false"));
+    }
+
+    /**
+     * Adds a new trace id and the current time.
+     */
+    public static void stamp(Headers headers) {
+        headers.add(TRACE_ID, toBytes(ThreadLocalRandom.current().nextLong()));
+        headers.add(GENERATED_AT, toBytes(epochMicros()));
+    }
+
+    /** Current wall-clock time in microseconds since the epoch. */
+    public static long epochMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000;
+    }
+
+    /**
+     * Value of a long header, {@code defaultValue} when the record does not have it.
+     */
+    static long getLong(Headers headers, String key, long defaultValue) {
+        Header header = headers.lastHeader(key);
+        if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+            return defaultValue;
+        }
+        return ByteBuffer.wrap(header.value()).getLong();
+    }
+
+    private static byte[] toBytes(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+}
@@ -1,17 +1,21 @@
 package io.confluent.examples.datacontract.utils;
 
-import org.apache.kafka.clients.admin.AdminClient;
-import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.*;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.log4j.Logger;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Collections;
-import java.util.Properties;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
 
 public class ClientsUtils {
 
+    private static final Logger logger = Logger.getLogger(ClientsUtils.class);
+
     public static Properties loadConfig(final String configFile) throws IOException {
         if (!Files.exists(Paths.get(configFile))) {
             throw new IOException(configFile + " not found.");
@@ -24,31 +28,124 @@ public class ClientsUtils {
     }
 
     public static String createTopicIfNotExists(Properties props, String topicName) {
-        AdminClient adminClient = AdminClient.create(props);
-        boolean topicExists = false;
+        // Replace possible spaces with - on the topic name
+        topicName = topicName.replace(" ", "-");
         try {
-            // Replace possible spaces with - on the topic name
-            topicName = topicName.replace(" ", "-");
-
-            // Check if topic already exists
-            topicExists = adminClient.listTopics().names().get().contains(topicName);
-            if (!topicExists) {
-                int partitions = new Integer(props.getProperty("num.partitions"));
-                int replication = new Integer(props.getProperty("replication.factor"));
-                NewTopic newTopic = new NewTopic(topicName, partitions, (short) replication);
-                adminClient.createTopics(Collections.singletonList(newTopic)).all().get();
-            }
+            provisionTopics(props, Collections.singletonList(TopicSpec.fromProperties(props, topicName)));
         } catch (InterruptedException e) {
             e.printStackTrace();
         } catch (ExecutionException e) {
             e.printStackTrace();
-        } finally {
-            // Close the client
-            adminClient.close();
         }
         return topicName;
     }
 
+    /**
+     * Creates the missing topics and brings the existing ones up to their spec in one admin session: partitions
+     * are added when the spec asks for more, and configs that differ are set. Partition counts are never lowered
+     * and replication factors never changed, those differences are only logged.
+     *
+     * @return the partition count of each topic after provisioning
+     */
+    public static Map<String, Integer> provisionTopics(Properties props, Collection<TopicSpec> topics)
+            throws ExecutionException, InterruptedException {
+        Map<String, Integer> partitionCounts = new TreeMap<>();
+        try (Admin admin = Admin.create(props)) {
+            Map<String, TopicSpec> specs = new LinkedHashMap<>();
+            for (TopicSpec topic : topics) {
+                specs.put(topic.getName(), topic);
+            }
+            Map<String, TopicDescription> existing = describeExisting(admin, specs.keySet());
+
+            List<NewTopic> newTopics = new ArrayList<>();
+            Map<String, NewPartitions> newPartitions = new HashMap<>();
+            for (TopicSpec spec : specs.values()) {
+                TopicDescription description = existing.get(spec.getName());
+                if (description == null) {
+                    newTopics.add(new NewTopic(spec.getName(), spec.getPartitions(), spec.getReplicationFactor())
+                            .configs(spec.getConfigs()));
+                    logger.info("Creating topic " + spec);
+                    continue;
+                }
+                int current = description.partitions().size();
+                partitionCounts.put(spec.getName(), current);
+                int wanted = spec.getPartitions().orElse(current);
+                if (wanted > current) {
+                    newPartitions.put(spec.getName(), NewPartitions.increaseTo(wanted));
+                    partitionCounts.put(spec.getName(), wanted);
+                    logger.info("Growing topic " + spec.getName() + " from " + current + " to " + wanted + " partitions");
+                } else if (wanted < current) {
+                    logger.warn("Topic " + spec.getName() + " has " + current + " partitions, more than the " + wanted
+                            + " wanted; partitions cannot be removed");
+                }
+                int replicas = description.partitions().get(0).replicas().size();
+                if (spec.getReplicationFactor().isPresent() && spec.getReplicationFactor().get() != replicas) {
+                    logger.warn("Topic " + spec.getName() + " has replication factor " + replicas + " instead of "
+                            + spec.getReplicationFactor().get() + "; reassign its partitions to change it");
+                }
+            }
+
+            if (!newTopics.isEmpty()) {
+                CreateTopicsResult created = admin.createTopics(newTopics);
+                created.all().get();
+                for (NewTopic newTopic : newTopics) {
+                    partitionCounts.put(newTopic.name(), created.numPartitions(newTopic.name()).get());
+                }
+            }
+            if (!newPartitions.isEmpty()) {
+                admin.createPartitions(newPartitions).all().get();
+            }
+            alterChangedConfigs(admin, specs, existing.keySet());
+        }
+        return partitionCounts;
+    }
+
+    private static Map<String, TopicDescription> describeExisting(Admin admin, Collection<String> names)
+            throws ExecutionException, InterruptedException {
+        Map<String, TopicDescription> existing = new HashMap<>();
+        for (Map.Entry<String, KafkaFuture<TopicDescription>> topic : admin.describeTopics(names).topicNameValues().entrySet()) {
+            try {
+                existing.put(topic.getKey(), topic.getValue().get());
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof UnknownTopicOrPartitionException)) {
+                    throw e;
+                }
+            }
+        }
+        return existing;
+    }
+
+    private static void alterChangedConfigs(Admin admin, Map<String, TopicSpec> specs, Set<String> existing)
+            throws ExecutionException, InterruptedException {
+        List<ConfigResource> resources = new ArrayList<>();
+        for (String name : existing) {
+            if (!specs.get(name).getConfigs().isEmpty()) {
+                resources.add(new ConfigResource(ConfigResource.Type.TOPIC, name));
+            }
+        }
+        if (resources.isEmpty()) {
+            return;
+        }
+        Map<ConfigResource, Collection<AlterConfigOp>> changes = new HashMap<>();
+        for (Map.Entry<ConfigResource, Config> current : admin.describeConfigs(resources).all().get().entrySet()) {
+            List<AlterConfigOp> ops = new ArrayList<>();
+            for (Map.Entry<String, String> config : specs.get(current.getKey().name()).getConfigs().entrySet()) {
+                ConfigEntry entry = current.getValue().get(config.getKey());
+                if (entry == null || !config.getValue().equals(entry.value())) {
+                    ops.add(new AlterConfigOp(new ConfigEntry(config.getKey(), config.getValue()), AlterConfigOp.OpType.SET));
+                    logger.info("Setting " + config.getKey() + "=" + config.getValue() + " on topic " + current.getKey().name()
+                            + (entry != null ? " (was " + entry.value() + ")" : ""));
+                }
+            }
+            if (!ops.isEmpty()) {
+                changes.put(current.getKey(), ops);
+            }
+        }
+        if (!changes.isEmpty()) {
+            admin.incrementalAlterConfigs(changes).all().get();
+        }
+    }
+
     public static int sizeof(Object obj) throws IOException {
         ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
         ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteOutputStream);
@@ -65,13 +162,24 @@ public class ClientsUtils {
 
     public static void main(final String[] args) throws Exception {
         int numArgs = args.length;
-        if (numArgs < 2) {
-            System.out.println("Provide the properties file and topic as arguments.");
+        if (numArgs < 1) {
+            System.out.println("Provide the properties file and the topics as arguments.");
             System.exit(1);
         } else {
             try {
-                ClientsUtils utils = new ClientsUtils();
-                createTopicIfNotExists(loadConfig(args[0]),args[1]);
+                Properties props = loadConfig(args[0]);
+                // Topics from the command line, or else the comma separated "topics" property
+                List<String> names = numArgs > 1 ? Arrays.asList(args).subList(1, numArgs)
+                        : Arrays.asList(props.getProperty("topics", "").split("\\s*,\\s*"));
+                List<TopicSpec> topics = new ArrayList<>();
+                for (String name : names) {
+                    if (!name.trim().isEmpty()) {
+                        topics.add(TopicSpec.fromProperties(props, name.trim().replace(" ", "-")));
+                    }
+                }
+                for (Map.Entry<String, Integer> topic : provisionTopics(props, topics).entrySet()) {
+                    System.out.println(topic.getKey() + ": " + topic.getValue() + " partitions");
+                }
             } catch (Exception e) {
                 System.out.println("Error in ProducerApp.main method: " + e.getMessage());
             }
@@ -0,0 +1,86 @@
+package io.confluent.examples.datacontract.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue for exactly one producer thread and one consumer thread, without locks. The producer only writes
+ * the tail and the consumer only writes the head, each published with an ordered store. Each side keeps a cached
+ * copy of the other side's counter and reads the shared one only when the cache says the buffer is full or empty.
+ */
+public class SpscRingBuffer<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+    // Next slot to read, written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write, written by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // Producer-side copy of the head
+    private long headCache;
+    // Consumer-side copy of the tail
+    private long tailCache;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public SpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring buffer capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        buffer = new Object[Math.max(1, size)];
+        mask = buffer.length - 1;
+    }
+
+    /**
+     * Adds an element unless the buffer is full. Producer thread only.
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        if (position - headCache >= buffer.length) {
+            headCache = head.get();
+            if (position - headCache >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) position & mask] = element;
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * Takes the oldest element, or null when the buffer is empty. Consumer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        if (position >= tailCache) {
+            tailCache = tail.get();
+            if (position >= tailCache) {
+                return null;
+            }
+        }
+        int slot = (int) position & mask;
+        E element = (E) buffer[slot];
+        buffer[slot] = null;
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    /**
+     * Number of elements, possibly stale while the producer and consumer run. Any thread.
+     */
+    public int size() {
+        long head = this.head.get();
+        long tail = this.tail.get();
+        return (int) Math.max(0, Math.min(buffer.length, tail - head));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
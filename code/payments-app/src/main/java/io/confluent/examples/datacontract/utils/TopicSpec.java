@@ -0,0 +1,105 @@
+package io.confluent.examples.datacontract.utils;
+
+import java.util.*;
+
+/**
+ * Desired layout of a topic: partition count, replication factor and topic configs. Unset counts fall back to
+ * the broker defaults.
+ */
+public class TopicSpec {
+
+    private final String name;
+    private final Optional<Integer> partitions;
+    private final Optional<Short> replicationFactor;
+    private final Map<String, String> configs;
+
+    public TopicSpec(String name, Optional<Integer> partitions, Optional<Short> replicationFactor, Map<String, String> configs) {
+        this.name = name;
+        this.partitions = partitions;
+        this.replicationFactor = replicationFactor;
+        this.configs = Collections.unmodifiableMap(new TreeMap<>(configs));
+    }
+
+    /**
+     * Reads the layout of {@code name} from the client properties. The partition count is, in order of precedence,
+     * {@code topic.<name>.partitions}, the count needed to carry {@code topic.<name>.target.records.per.second} at
+     * the measured {@code topic.partition.records.per.second} (or its {@code topic.<name>.} override), or
+     * {@code num.partitions}, which is also the minimum of the derived count. Topic configs come from
+     * {@code topic.config.<config>}, overridden by {@code topic.<name>.config.<config>}.
+     */
+    public static TopicSpec fromProperties(Properties props, String name) {
+        String prefix = "topic." + name + ".";
+        Optional<Integer> minPartitions = optional(props, "num.partitions").map(Integer::parseInt);
+        Optional<Integer> partitions = optional(props, prefix + "partitions").map(Integer::parseInt);
+        if (!partitions.isPresent()) {
+            Optional<Double> targetRate = optional(props, prefix + "target.records.per.second").map(Double::parseDouble);
+            Optional<Double> partitionRate = optional(props, prefix + "partition.records.per.second",
+                    "topic.partition.records.per.second").map(Double::parseDouble);
+            if (targetRate.isPresent() && partitionRate.isPresent()) {
+                partitions = Optional.of(partitionsFor(targetRate.get(), partitionRate.get(), minPartitions.orElse(1)));
+            } else {
+                partitions = minPartitions;
+            }
+        }
+        Optional<Short> replicationFactor = optional(props, prefix + "replication.factor", "replication.factor")
+                .map(Short::parseShort);
+
+        Map<String, String> configs = new HashMap<>();
+        collectConfigs(props, "topic.config.", configs);
+        collectConfigs(props, prefix + "config.", configs);
+        return new TopicSpec(name, partitions, replicationFactor, configs);
+    }
+
+    /**
+     * Partitions needed to carry {@code targetRate} when one partition sustains {@code partitionRate}.
+     */
+    static int partitionsFor(double targetRate, double partitionRate, int minPartitions) {
+        if (partitionRate <= 0) {
+            throw new IllegalArgumentException("The per-partition rate must be positive: " + partitionRate);
+        }
+        return Math.max(minPartitions, (int) Math.ceil(targetRate / partitionRate));
+    }
+
+    /**
+     * The first of {@code keys} that has a value.
+     */
+    private static Optional<String> optional(Properties props, String... keys) {
+        for (String key : keys) {
+            String value = props.getProperty(key);
+            if (value != null && !value.trim().isEmpty()) {
+                return Optional.of(value.trim());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static void collectConfigs(Properties props, String prefix, Map<String, String> configs) {
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                configs.put(key.substring(prefix.length()), props.getProperty(key).trim());
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Optional<Integer> getPartitions() {
+        return partitions;
+    }
+
+    public Optional<Short> getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    public Map<String, String> getConfigs() {
+        return configs;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (partitions " + partitions.map(String::valueOf).orElse("default")
+                + ", replication " + replicationFactor.map(String::valueOf).orElse("default") + ", configs " + configs + ")";
+    }
+}
@@ -0,0 +1,116 @@
+package io.confluent.examples.datacontract;
+
+import io.confluent.examples.datacontract.utils.LatencyHistogram;
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.rest.entities.requests.RegisterSchemaRequest;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.confluent.kafka.schemaregistry.utils.JacksonMapper;
+import kafka.testkit.KafkaClusterTestKit;
+import kafka.testkit.TestKitNodes;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link ProducerApp} against an in-JVM Kafka broker and a mock Schema Registry holding
+ * {@code payments-value.avsc} with its data quality rules, and fails when records/sec or the p99 send
+ * latency regress beyond the tolerance in {@code perf-baseline.properties}.
+ *
+ * <p>Run with {@code mvn verify -Pperf}. {@code -Dperf.duration.seconds} (default 30) and
+ * {@code -Dperf.tolerance} override the run length and the stored tolerance.
+ */
+@Tag("perf")
+public class ProducerAppPerfTest {
+
+    private static final String SCHEMA_REGISTRY_SCOPE = "payments-perf";
+
+    private static KafkaClusterTestKit cluster;
+
+    @BeforeAll
+    static void startCluster() throws Exception {
+        cluster = new KafkaClusterTestKit.Builder(
+                new TestKitNodes.Builder().setNumBrokerNodes(1).setNumControllerNodes(1).build()).build();
+        cluster.format();
+        cluster.startup();
+        cluster.waitForReadyBrokers();
+        try (AdminClient admin = AdminClient.create(cluster.clientProperties())) {
+            admin.createTopics(Arrays.asList(
+                    new NewTopic("payments", 1, (short) 1),
+                    new NewTopic("error-payments", 1, (short) 1))).all().get();
+        }
+
+        String schema = new String(Files.readAllBytes(Paths.get("src/main/datacontracts/avro/payments-value.avsc")),
+                StandardCharsets.UTF_8);
+        RegisterSchemaRequest rules;
+        try (InputStream in = ProducerAppPerfTest.class.getResourceAsStream("/payments-value-dqr.json")) {
+            rules = JacksonMapper.INSTANCE.readValue(in, RegisterSchemaRequest.class);
+        }
+        MockSchemaRegistry.getClientForScope(SCHEMA_REGISTRY_SCOPE)
+                .register("payments-value", new AvroSchema(schema).copy(rules.getMetadata(), rules.getRuleSet()));
+    }
+
+    @AfterAll
+    static void stopCluster() throws Exception {
+        MockSchemaRegistry.dropScope(SCHEMA_REGISTRY_SCOPE);
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    @Test
+    void throughputAndLatencyWithinBaseline() throws Exception {
+        Properties baseline = new Properties();
+        try (InputStream in = ProducerAppPerfTest.class.getResourceAsStream("/perf-baseline.properties")) {
+            baseline.load(in);
+        }
+        double tolerance = Double.parseDouble(System.getProperty("perf.tolerance", baseline.getProperty("tolerance")));
+        double baselineRecordsPerSecond = Double.parseDouble(baseline.getProperty("records.per.second"));
+        double baselineP99Millis = Double.parseDouble(baseline.getProperty("p99.latency.ms"));
+        long durationSeconds = Long.getLong("perf.duration.seconds", 30);
+
+        Properties config = new Properties();
+        config.putAll(cluster.clientProperties());
+        config.put("schema.registry.url", "mock://" + SCHEMA_REGISTRY_SCOPE);
+        config.put("rule.executors._default_.param.secret", "perf-test-secret");
+        config.put("producer.interval.ms", "0");
+        config.put("producer.print.records", "false");
+        // Only valid payments: the invalid ones go to the DLQ and measure the failure path instead
+        config.put("producer.invalid.ratio", "0");
+        config.put("run.duration.seconds", String.valueOf(durationSeconds));
+        Path configFile = Files.createTempFile("perf-test", ".properties");
+        try (OutputStream out = Files.newOutputStream(configFile)) {
+            config.store(out, null);
+        }
+
+        ProducerApp producer = new ProducerApp(configFile.toString(), "Pos_Store_Perf_Test");
+        long start = System.nanoTime();
+        producer.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Files.delete(configFile);
+
+        LatencyHistogram latency = producer.getSendLatency();
+        double recordsPerSecond = latency.getCount() / seconds;
+        double p99Millis = latency.getPercentile(99) / 1e6;
+        System.out.println(String.format("ProducerApp: %d records in %.1f s, %.0f records/s (baseline %.0f), p99 %.2f ms (baseline %.2f)",
+                latency.getCount(), seconds, recordsPerSecond, baselineRecordsPerSecond, p99Millis, baselineP99Millis));
+
+        assertTrue(recordsPerSecond >= baselineRecordsPerSecond * (1 - tolerance),
+                String.format("Throughput regressed: %.0f records/s, baseline %.0f", recordsPerSecond, baselineRecordsPerSecond));
+        assertTrue(p99Millis <= baselineP99Millis * (1 + tolerance),
+                String.format("p99 latency regressed: %.2f ms, baseline %.2f ms", p99Millis, baselineP99Millis));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The live workload: new orders with 1 to 5 order items at {@code feeder.orders.per.second} (default one
+ * every {@link DataFeeder#INGESTION_INTERVAL} milliseconds), each order and its items in one transaction.
+ * The rate is read from the {@link WorkloadConfig} before every order, so it can be changed while running;
+ * a {@link ReplicationLagThrottle} can only slow it down.
+ */
+public class ContinuousFeeder {
+
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final double DEFAULT_ORDERS_PER_SECOND = 1000.0 / DataFeeder.INGESTION_INTERVAL;
+
+    private final Connection connection;
+    private final OrderGenerator orders;
+
+    private OrderSequencePublisher orderSequence;
+    private OperationLog.Writer recorder;
+    private ReplicationLagThrottle throttle;
+    private FeederCheckpoint checkpoint;
+    private WorkloadConfig workload;
+    private OrderLifecycleWorkload lifecycle;
+
+    public ContinuousFeeder(Connection connection, OrderGenerator orders) {
+        this.connection = connection;
+        this.orders = orders;
+    }
+
+    public void setOrderSequence(OrderSequencePublisher orderSequence) {
+        this.orderSequence = orderSequence;
+    }
+
+    public void setRecorder(OperationLog.Writer recorder) {
+        this.recorder = recorder;
+    }
+
+    public void setThrottle(ReplicationLagThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    public void setCheckpoint(FeederCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public void setWorkload(WorkloadConfig workload) {
+        this.workload = workload;
+    }
+
+    /**
+     * Hands every committed order to the lifecycle workload, which then moves it on from Pending.
+     */
+    public void setLifecycle(OrderLifecycleWorkload lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    /**
+     * Pause between two orders at the {@code feeder.orders.per.second} currently configured.
+     */
+    static double configuredIntervalMs(WorkloadConfig workload) {
+        double ordersPerSecond = workload != null
+                ? workload.getDouble("feeder.orders.per.second", DEFAULT_ORDERS_PER_SECOND) : DEFAULT_ORDERS_PER_SECOND;
+        return ordersPerSecond > 0 ? 1000 / ordersPerSecond : DataFeeder.INGESTION_INTERVAL;
+    }
+
+    private long nextIntervalNanos() {
+        double intervalMs = configuredIntervalMs(workload);
+        if (throttle != null) {
+            // The throttle catches up with a lower configured rate at its next sample
+            intervalMs = Math.max(intervalMs, throttle.getIntervalMs());
+            FeederMetrics.get().setGauge("target_orders_per_second", 1000 / intervalMs);
+        }
+        return (long) (intervalMs * 1_000_000);
+    }
+
+    public void run() throws SQLException, IOException {
+        connection.setAutoCommit(false);
+        try (OperationExecutor executor = new OperationExecutor(connection)) {
+            long nextTick = System.nanoTime();
+            while (true) {
+                LocalDateTime now = LocalDateTime.now();
+                List<Operation> operations = orders.nextOrder(System.currentTimeMillis(), now);
+                int orderID = operations.get(0).getValues()[0];
+                int rowsInTransaction = 0;
+                try {
+                    for (Operation operation : operations) {
+                        rowsInTransaction += executor.execute(operation);
+                    }
+                    DataFeeder.commitTimed(connection, rowsInTransaction);
+                    record(operations);
+                } catch (SQLException e) {
+                    connection.rollback();
+                    if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                        throw e;
+                    }
+                    // Another writer or an earlier run already used these ids: move past them and carry on
+                    orders.skipPast(DataFeeder.queryMaxId(connection, "OrderID", "orders"),
+                            DataFeeder.queryMaxId(connection, "OrderItemID", "order_items"));
+                    connection.commit();
+                    System.out.println("Duplicate key, continuing at OrderID " + orders.getNextOrderID()
+                            + " and OrderItemID " + orders.getNextOrderItemID());
+                    continue;
+                }
+
+                if (orderSequence != null) {
+                    orderSequence.publish(orderID, now);
+                }
+
+                if (lifecycle != null) {
+                    lifecycle.track(orderID, System.currentTimeMillis());
+                }
+
+                if (checkpoint != null) {
+                    checkpoint.saveIfDue(orders.getNextOrderID(), orders.getNextOrderItemID());
+                }
+
+                // Pace against an absolute schedule so slow transactions do not lower the target rate
+                nextTick += nextIntervalNanos();
+                long waitNanos = nextTick - System.nanoTime();
+                try {
+                    if (waitNanos > 0) {
+                        Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                    } else if (-waitNanos > 1_000_000_000L) {
+                        // More than a second behind: drop the backlog instead of bursting
+                        nextTick = System.nanoTime();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the operations of a committed transaction to the log; rolled back ones are never replayed.
+     */
+    private void record(List<Operation> operations) throws IOException {
+        if (recorder != null) {
+            for (Operation operation : operations) {
+                recorder.append(operation);
+            }
+        }
+    }
+}
@@ -1,24 +1,30 @@
 package com.example;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.sql.*;
-import java.time.format.DateTimeFormatter;
-import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.time.LocalDateTime;
+import java.util.*;
 
 public class DataFeeder {
 
-    private static final int CUSTOMER_ID_MIN = 1;
-    private static final int CUSTOMER_ID_MAX = 50;
-    private static final int PRODUCT_ID_MIN = 1;
-    private static final int PRODUCT_ID_MAX = 290;
+    static final int CUSTOMER_ID_MIN = 1;
+    static final int CUSTOMER_ID_MAX = 50;
 
     public static final int  INGESTION_INTERVAL = 1000;
+    private static final int SEED_BATCH_SIZE = 500;
 
 
     public static void main(String[] args) {
         Properties properties = getProperties();
+        if (Boolean.getBoolean("startup.only")) {
+            // Training run of the class-data-sharing archive built into the Docker image: load the JDBC driver
+            // and the order generator, and stop before the metrics server, the CSV files and the database
+            new OrderGenerator(new int[]{1}, 1, 1, new Random()).nextOrder(System.currentTimeMillis(), LocalDateTime.now());
+            DriverManager.getDrivers();
+            return;
+        }
+        FeederMetrics.get().start(properties);
 
         String dbUrl = properties.getProperty("db.url");
         String dbUser = properties.getProperty("db.user");
@@ -30,78 +36,278 @@ public class DataFeeder {
         List<String[]> orderData = readDataFromCSV("orders_sample_data.csv");
         List<String[]> orderItemData = readDataFromCSV("order_items_sample_data.csv");
 
-        String insertCustomerSQL = "INSERT INTO customers (CustomerID, CustomerName, Email, Segment, Address) VALUES (?, ?, ?, ?, ?)";
-        String insertProductSQL = "INSERT INTO products (ProductID,Brand,ProductName,Category,Description,Color,Size,Price,Stock) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        String insertOrderSQL = "INSERT INTO orders (OrderID, CustomerID, OrderDate, Status)VALUES (?, ?, ?, ?)";
-        String insertOrderItemsSQL = "INSERT INTO order_items (OrderItemID, OrderID, ProductID, Quantity) VALUES (?, ?, ?, ?)";
+        // Seeding is idempotent so a restarted feeder does not fail on rows loaded by a previous run
+        String insertCustomerSQL = "INSERT INTO customers (CustomerID, CustomerName, Email, Segment, Address) VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+        String insertProductSQL = "INSERT INTO products (ProductID,Brand,ProductName,Category,Description,Color,Size,Price,Stock) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+        String insertOrderSQL = "INSERT INTO orders (OrderID, CustomerID, OrderDate, Status) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+        String insertOrderItemsSQL = "INSERT INTO order_items (OrderItemID, OrderID, ProductID, Quantity) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+
+        int[] productIds = readProductIds(productData);
+        int firstOrderID = 3000;
+        int firstOrderItemID = 9000;
+
+        DatasetGenerator datasetGenerator = null;
+        if (DatasetGenerator.isEnabled(properties)) {
+            datasetGenerator = DatasetGenerator.fromProperties(properties);
+            String outputDir = properties.getProperty("dataset.output.dir");
+            if (outputDir != null) {
+                // CSV export only, no database involved
+                try {
+                    System.out.println("Writing dataset " + datasetGenerator + " to " + outputDir);
+                    datasetGenerator.writeCsv(Paths.get(outputDir));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                return;
+            }
+            productIds = datasetGenerator.getProductIds();
+            firstOrderID = datasetGenerator.getOrderCount() + 1;
+            firstOrderItemID = datasetGenerator.getMaxOrderItemID() + 1;
+        }
+
+
+        // A fixed seed makes the generated workload repeatable; without one every run differs
+        String seedProperty = properties.getProperty("feeder.seed");
+        long seed = seedProperty != null ? Long.parseLong(seedProperty) : new Random().nextLong();
+
+        WorkloadConfig workload = new WorkloadConfig(properties);
+        workload.start();
+
+        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+             OrderSequencePublisher orderSequence = OrderSequencePublisher.fromProperties(properties);
+             OperationLog.Writer recorder = openRecorder(properties);
+             ReplicationLagThrottle throttle = ReplicationLagThrottle.isEnabled(properties)
+                     ? new ReplicationLagThrottle(properties, workload) : null) {
+            if (datasetGenerator != null) {
+                System.out.println("Loading dataset " + datasetGenerator);
+                datasetGenerator.load(properties);
+            } else {
+                if (!isTableLoaded(connection, "customers", customerData.size())) {
+                    insertCustomerData(connection, insertCustomerSQL, customerData);
+                }
+                if (!isTableLoaded(connection, "products", productData.size())) {
+                    insertProductData(connection, insertProductSQL, productData);
+                }
+                if (!isTableLoaded(connection, "orders", orderData.size())) {
+                    insertOrderData(connection, insertOrderSQL, orderData);
+                }
+                if (!isTableLoaded(connection, "order_items", orderItemData.size())) {
+                    insertOrderItemsData(connection, insertOrderItemsSQL, orderItemData);
+                }
+            }
 
+            if (OperationReplayer.isEnabled(properties)) {
+                new OperationReplayer(connection, properties).run();
+                return;
+            }
 
-        List<String[]> ordersData = generateOrderData();
-        List<String[]> orderItemsData = generateOrderItemsData();
+            InventoryWorkload inventoryWorkload = null;
+            if (InventoryWorkload.isEnabled(properties)) {
+                inventoryWorkload = new InventoryWorkload(properties, new Random(seed + 1));
+                inventoryWorkload.setRecorder(recorder);
+                Thread inventoryThread = new Thread(inventoryWorkload, "inventory-workload");
+                inventoryThread.setDaemon(true);
+                inventoryThread.start();
+            }
 
+            FeederCheckpoint checkpoint = FeederCheckpoint.fromProperties(properties);
+            int[] nextIds = resumeSequences(connection, checkpoint, firstOrderID, firstOrderItemID);
+            System.out.println("Continuous feed starts at OrderID " + nextIds[0] + " and OrderItemID " + nextIds[1]);
 
-        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            insertCustomerData(connection, insertCustomerSQL, customerData);
-            insertProductData(connection, insertProductSQL, productData);
-            insertOrderData(connection, insertOrderSQL, orderData);
-            insertOrderItemsData(connection, insertOrderItemsSQL, orderItemData);
-            insertDataContinuously(connection);
+            OrderGenerator orderGenerator = new OrderGenerator(productIds, nextIds[0], nextIds[1], new Random(seed));
+            if (HistoricalBackfill.isEnabled(properties)) {
+                HistoricalBackfill backfill = new HistoricalBackfill(connection, properties, orderGenerator, new Random(seed + 2));
+                backfill.setRecorder(recorder);
+                backfill.run();
+            }
+            if (inventoryWorkload != null) {
+                // Live orders only: the backfilled history would drain the stock before any restock
+                orderGenerator.setStockUpdates(inventoryWorkload.getZipfExponent());
+            }
 
+            OrderLifecycleWorkload lifecycle = null;
+            if (OrderLifecycleWorkload.isEnabled(properties)) {
+                lifecycle = new OrderLifecycleWorkload(properties, new Random(seed + 3));
+                lifecycle.setRecorder(recorder);
+                // After the backfill, so its open orders are tracked along with those of earlier runs
+                lifecycle.loadOpenOrders(connection);
+                Thread lifecycleThread = new Thread(lifecycle, "order-lifecycle");
+                lifecycleThread.setDaemon(true);
+                lifecycleThread.start();
+                // Live orders start their lifecycle as Pending
+                orderGenerator.setInitialStatus(OrderLifecycleWorkload.PENDING);
+            }
 
-        } catch (SQLException e) {
+            ContinuousFeeder continuousFeeder = new ContinuousFeeder(connection, orderGenerator);
+            continuousFeeder.setCheckpoint(checkpoint);
+            continuousFeeder.setOrderSequence(orderSequence);
+            continuousFeeder.setRecorder(recorder);
+            continuousFeeder.setWorkload(workload);
+            continuousFeeder.setLifecycle(lifecycle);
+            if (throttle != null) {
+                throttle.start();
+                continuousFeeder.setThrottle(throttle);
+            }
+            continuousFeeder.run();
+
+
+        } catch (SQLException | IOException e) {
             e.printStackTrace();
         }
     }
 
 
 
-    private static void insertDataContinuously(Connection connection) throws SQLException {
-        String insertOrderSQL = "INSERT INTO orders (OrderID, CustomerID, OrderDate, Status) VALUES (?, ?, ?, ?)";
-        String insertOrderItemSQL = "INSERT INTO order_items (OrderItemID, OrderID, ProductID, Quantity) VALUES (?, ?, ?, ?)";
-        Random random = new Random();
-        int orderID = 3000;
-        int orderItemID = 9000;
+    /**
+     * Cheap check for an already seeded table: counts at most {@code expectedRows} rows instead of the whole table.
+     */
+    static boolean isTableLoaded(Connection connection, String table, long expectedRows) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM (SELECT 1 FROM " + table + " LIMIT ?) loaded")) {
+            statement.setLong(1, expectedRows);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                boolean loaded = resultSet.getLong(1) >= expectedRows;
+                if (loaded) {
+                    System.out.println("Skipping " + table + ": already holds the " + expectedRows + " seed rows");
+                }
+                return loaded;
+            }
+        }
+    }
 
-        while (true) {
-            // Insert Order
-            try (PreparedStatement orderStatement = connection.prepareStatement(insertOrderSQL)) {
-                int customerID = CUSTOMER_ID_MIN + random.nextInt(CUSTOMER_ID_MAX - CUSTOMER_ID_MIN + 1);
-                LocalDateTime now = LocalDateTime.now();
-                Timestamp orderDate = Timestamp.valueOf(now);
-                String status = random.nextBoolean() ? "Completed" : "Pending";
-                orderStatement.setInt(1, orderID);
-                orderStatement.setInt(2, customerID);
-                orderStatement.setTimestamp(3, orderDate);
-                orderStatement.setString(4, status);
-                orderStatement.executeUpdate();
-                System.out.println("Order added with ID : " + orderID );
+    static int queryMaxId(Connection connection, String column, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
 
-            }
+    /**
+     * Returns the next {@code {OrderID, OrderItemID}} for the continuous feed: the highest of the defaults,
+     * the checkpoint and the ids already in the database.
+     */
+    static int[] resumeSequences(Connection connection, FeederCheckpoint checkpoint, int firstOrderID, int firstOrderItemID) throws SQLException {
+        int nextOrderID = Math.max(firstOrderID, queryMaxId(connection, "OrderID", "orders") + 1);
+        int nextOrderItemID = Math.max(firstOrderItemID, queryMaxId(connection, "OrderItemID", "order_items") + 1);
+        int[] saved = checkpoint != null ? checkpoint.load() : null;
+        if (saved != null) {
+            nextOrderID = Math.max(nextOrderID, saved[0]);
+            nextOrderItemID = Math.max(nextOrderItemID, saved[1]);
+        }
+        return new int[]{nextOrderID, nextOrderItemID};
+    }
 
-            // Insert Multiple Order Items for the same OrderID
-            try (PreparedStatement orderItemStatement = connection.prepareStatement(insertOrderItemSQL)) {
-                int numberOfItems = 1 + random.nextInt(5); // Random number of order items between 1 and 5
-                for (int i = 0; i < numberOfItems; i++) {
-                    int productID = PRODUCT_ID_MIN + random.nextInt(PRODUCT_ID_MAX - PRODUCT_ID_MIN + 1);
-                    int quantity = 1 + random.nextInt(10);
-                    orderItemStatement.setInt(1, orderItemID++);
-                    orderItemStatement.setInt(2, orderID);
-                    orderItemStatement.setInt(3, productID);
-                    orderItemStatement.setInt(4, quantity);
-                    orderItemStatement.executeUpdate();
-                    System.out.println("Order item added with ID : " + orderItemID );
-                }
-            }
+    /**
+     * Runs the statement and records its latency and row count against the table.
+     */
+    static int executeTimed(PreparedStatement statement, String table) throws SQLException {
+        JdbcStatementEvent event = new JdbcStatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            int rows = statement.executeUpdate();
+            FeederMetrics.get().recordStatement(table, System.nanoTime() - start, rows);
+            event.rows = rows;
+            return rows;
+        } catch (SQLException e) {
+            FeederMetrics.get().recordError(table);
+            event.failure = e.getSQLState();
+            throw e;
+        } finally {
+            endStatementEvent(event, table, false);
+        }
+    }
 
-            orderID++; // Increment orderID for the next order
+    /**
+     * Runs the query and records its latency against the table, with no rows written. The caller closes the
+     * result set.
+     */
+    static ResultSet queryTimed(PreparedStatement statement, String table) throws SQLException {
+        JdbcStatementEvent event = new JdbcStatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            ResultSet resultSet = statement.executeQuery();
+            FeederMetrics.get().recordStatement(table, System.nanoTime() - start, 0);
+            return resultSet;
+        } catch (SQLException e) {
+            FeederMetrics.get().recordError(table);
+            event.failure = e.getSQLState();
+            throw e;
+        } finally {
+            endStatementEvent(event, table, false);
+        }
+    }
 
-            try {
-                Thread.sleep(INGESTION_INTERVAL);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                // Handle the exception, if necessary
+    /**
+     * Executes the pending batch and records its latency and row count against the table.
+     */
+    static void executeBatchTimed(PreparedStatement statement, String table, int rows) throws SQLException {
+        JdbcStatementEvent event = new JdbcStatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            statement.executeBatch();
+            FeederMetrics.get().recordStatement(table, System.nanoTime() - start, rows);
+            event.rows = rows;
+        } catch (SQLException e) {
+            FeederMetrics.get().recordError(table);
+            event.failure = e.getSQLState();
+            throw e;
+        } finally {
+            endStatementEvent(event, table, true);
+        }
+    }
+
+    /**
+     * Ends a statement event and writes it when it is enabled and over its threshold.
+     */
+    private static void endStatementEvent(JdbcStatementEvent event, String table, boolean batch) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = table;
+            event.batch = batch;
+            event.commit();
+        }
+    }
+
+    static void commitTimed(Connection connection, int rowsInTransaction) throws SQLException {
+        JdbcCommitEvent event = new JdbcCommitEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            connection.commit();
+        } catch (SQLException e) {
+            event.failure = e.getSQLState();
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.rows = rowsInTransaction;
+                event.commit();
             }
         }
+        FeederMetrics.get().recordCommit(System.nanoTime() - start, rowsInTransaction);
+    }
+
+    private static OperationLog.Writer openRecorder(Properties properties) throws IOException {
+        String recordFile = properties.getProperty("record.file");
+        if (recordFile == null) {
+            return null;
+        }
+        OperationLog.Writer recorder = new OperationLog.Writer(recordFile);
+        // The feeder normally runs until it is stopped, so make sure the tail of the log reaches the disk
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                recorder.close();
+                System.out.println("Recorded " + recorder.getWritten() + " operations to " + recordFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+        return recorder;
     }
 
     private static Properties getProperties() {
@@ -126,7 +332,14 @@ public class DataFeeder {
         return properties;
     }
 
-    private static List<String[]> readDataFromCSV(String fileName) {
+    private static int[] readProductIds(List<String[]> productData) {
+        // Take the ProductIDs from the loaded products data so generated rows always reference existing products
+        return productData.stream()
+                .mapToInt(row -> Integer.parseInt(row[0].trim()))
+                .toArray();
+    }
+
+    static List<String[]> readDataFromCSV(String fileName) {
         List<String[]> data = new ArrayList<>();
         try (InputStream inputStream = DataFeeder.class.getClassLoader().getResourceAsStream(fileName)) {
             if (inputStream != null) {
@@ -153,14 +366,21 @@ public class DataFeeder {
 
     public static void insertCustomerData(Connection connection, String insertSQL, List<String[]> data) throws SQLException {
         try (PreparedStatement preparedStatement = connection.prepareStatement(insertSQL)) {
+            int pending = 0;
             for (String[] row : data) {
                 preparedStatement.setInt(1, Integer.parseInt(row[0].trim())); // CustomerID
                 preparedStatement.setString(2, row[1].trim()); // CustomerName
                 preparedStatement.setString(3, row[2].trim()); // Email
                 preparedStatement.setString(4, row[3].trim()); // Segment
                 preparedStatement.setString(5, row[4].trim()); // Address
-                int rowsInserted = preparedStatement.executeUpdate();
-                // Handle insertion result
+                preparedStatement.addBatch();
+                if (++pending == SEED_BATCH_SIZE) {
+                    executeBatchTimed(preparedStatement, "customers", pending);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                executeBatchTimed(preparedStatement, "customers", pending);
             }
         }
     }
@@ -168,6 +388,7 @@ public class DataFeeder {
 
     public static void insertProductData(Connection connection, String insertSQL, List<String[]> data) throws SQLException {
         try (PreparedStatement preparedStatement = connection.prepareStatement(insertSQL)) {
+            int pending = 0;
             for (String[] row : data) {
                 preparedStatement.setInt(1, Integer.parseInt(row[0].trim())); // ProductID
                 preparedStatement.setString(2, row[1].trim()); // Brand
@@ -178,8 +399,14 @@ public class DataFeeder {
                 preparedStatement.setString(7, row[6].trim()); // Size
                 preparedStatement.setDouble(8, Double.parseDouble(row[7].trim())); // Price
                 preparedStatement.setInt(9, Integer.parseInt(row[8].trim())); // Stock
-                int rowsInserted = preparedStatement.executeUpdate();
-                // Handle insertion result
+                preparedStatement.addBatch();
+                if (++pending == SEED_BATCH_SIZE) {
+                    executeBatchTimed(preparedStatement, "products", pending);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                executeBatchTimed(preparedStatement, "products", pending);
             }
         }
     }
@@ -187,26 +414,40 @@ public class DataFeeder {
 
     public static void insertOrderData(Connection connection, String insertSQL, List<String[]> data) throws SQLException {
         try (PreparedStatement preparedStatement = connection.prepareStatement(insertSQL)) {
+            int pending = 0;
             for (String[] row : data) {
                 preparedStatement.setInt(1, Integer.parseInt(row[0].trim())); // OrderID
                 preparedStatement.setInt(2, Integer.parseInt(row[1].trim())); // CustomerID
                 preparedStatement.setTimestamp(3, Timestamp.valueOf(row[2].trim()));// OrderDate
                 preparedStatement.setString(4, row[3].trim()); // Status
-                int rowsInserted = preparedStatement.executeUpdate();
-                // Handle insertion result
+                preparedStatement.addBatch();
+                if (++pending == SEED_BATCH_SIZE) {
+                    executeBatchTimed(preparedStatement, "orders", pending);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                executeBatchTimed(preparedStatement, "orders", pending);
             }
         }
     }
 
     public static void insertOrderItemsData(Connection connection, String insertSQL, List<String[]> data) throws SQLException {
         try (PreparedStatement preparedStatement = connection.prepareStatement(insertSQL)) {
+            int pending = 0;
             for (String[] row : data) {
                 preparedStatement.setInt(1, Integer.parseInt(row[0].trim())); // OrderItemID
                 preparedStatement.setInt(2, Integer.parseInt(row[1].trim())); // OrderID
                 preparedStatement.setInt(3, Integer.parseInt(row[2].trim())); // ProductID
                 preparedStatement.setInt(4, Integer.parseInt(row[3].trim())); // Quantity
-                int rowsInserted = preparedStatement.executeUpdate();
-                // Handle insertion result, if necessary
+                preparedStatement.addBatch();
+                if (++pending == SEED_BATCH_SIZE) {
+                    executeBatchTimed(preparedStatement, "order_items", pending);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                executeBatchTimed(preparedStatement, "order_items", pending);
             }
         }
     }
@@ -270,37 +511,4 @@ public class DataFeeder {
             }
         }
     }
-
-    private static List<String[]> generateOrderData() {
-        List<String[]> data = new CopyOnWriteArrayList<>();
-        Random random = new Random();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-        for (int i = 1; i <= 1000; i++) {
-            int orderID = i;
-            int customerID = CUSTOMER_ID_MIN + random.nextInt(CUSTOMER_ID_MAX - CUSTOMER_ID_MIN + 1);
-            String orderDate = LocalDateTime.now().format(formatter);
-            String status = random.nextBoolean() ? "Completed" : "Pending";
-            data.add(new String[]{String.valueOf(orderID), String.valueOf(customerID), orderDate, status});
-        }
-
-        return data;
-    }
-
-
-    private static List<String[]> generateOrderItemsData() {
-        List<String[]> data = new CopyOnWriteArrayList<>();
-        Random random = new Random();
-
-        for (int i = 1; i <= 5000; i++) {
-            int orderItemID = i;
-            int orderID = 1 + random.nextInt(1000);
-            int productID = PRODUCT_ID_MIN + random.nextInt(PRODUCT_ID_MAX - PRODUCT_ID_MIN + 1);
-            int quantity = 1 + random.nextInt(10);
-            data.add(new String[]{String.valueOf(orderItemID), String.valueOf(orderID), String.valueOf(productID), String.valueOf(quantity)});
-        }
-
-        return data;
-    }
 }
-
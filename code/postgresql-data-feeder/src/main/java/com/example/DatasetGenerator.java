@@ -0,0 +1,351 @@
+package com.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * TPC-style scale-factor generator for the customers, products, orders and order_items tables.
+ *
+ * <p>Every row is derived only from the seed, its table and its primary key, so rows can be produced
+ * lazily and in parallel while staying reproducible and referentially consistent: orders only reference
+ * generated customers, and order items only reference generated orders and products.
+ *
+ * <p>Row counts per scale factor (SF): 15,000 customers, 2,000 products and 150,000 orders, with 1 to
+ * {@value #MAX_ITEMS_PER_ORDER} items per order (about 600,000 order items).
+ */
+public class DatasetGenerator {
+
+    static final int CUSTOMERS_PER_SF = 15_000;
+    static final int PRODUCTS_PER_SF = 2_000;
+    static final int ORDERS_PER_SF = 150_000;
+    static final int MAX_ITEMS_PER_ORDER = 7;
+
+    private static final String INSERT_CUSTOMER_SQL = "INSERT INTO customers (CustomerID, CustomerName, Email, Segment, Address) VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String INSERT_PRODUCT_SQL = "INSERT INTO products (ProductID,Brand,ProductName,Category,Description,Color,Size,Price,Stock) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String INSERT_ORDER_SQL = "INSERT INTO orders (OrderID, CustomerID, OrderDate, Status) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String INSERT_ORDER_ITEM_SQL = "INSERT INTO order_items (OrderItemID, OrderID, ProductID, Quantity) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private static final String[] FIRST_NAMES = {"John", "Jane", "Michael", "Emily", "David", "Sarah", "Chris", "Laura", "James", "Anna", "Robert", "Olivia", "Daniel", "Sophia", "Kevin", "Mia"};
+    private static final String[] LAST_NAMES = {"Doe", "Smith", "Johnson", "Brown", "Williams", "Jones", "Miller", "Davis", "Garcia", "Wilson", "Taylor", "Clark", "Lewis", "Walker", "Young", "King"};
+    private static final String[] SEGMENTS = {"Premium", "Regular", "New"};
+    private static final String[] STREETS = {"Main St", "Oak St", "Pine St", "Maple Ave", "Cedar Rd", "Elm St", "Lake Dr", "Hill Rd"};
+    private static final String[] CITIES = {"Los Angeles CA", "New York NY", "Chicago IL", "Houston TX", "Phoenix AZ", "Seattle WA", "Denver CO", "Miami FL"};
+    private static final String[] BRANDS = {"Nike", "Calvin Klein", "Under Armour", "Zara", "Tommy Hilfiger", "Puma", "Levi's", "American Eagle", "Adidas", "Ralph Lauren", "H&M", "Forever 21", "GAP", "Lululemon", "Express"};
+    private static final String[] CATEGORIES = {"Shirts", "Pants", "T-Shirts", "Shorts", "Jeans", "Hoodies", "Underwear", "Sweaters", "Jackets", "Shoes", "Tank Tops", "Sweatshirts", "Skirts", "Leggings", "Dresses"};
+    private static final String[] STYLES = {"Classic", "Slim Fit", "Relaxed", "Performance", "Essential", "Vintage", "Premium", "Lightweight"};
+    private static final String[] COLORS = {"Black", "White", "Blue", "Gray", "Red", "Green", "Navy", "Beige"};
+    private static final String[] SIZES = {"XS", "S", "M", "L", "XL", "XXL"};
+    private static final String[] STATUSES = {"Completed", "Pending"};
+
+    private static final DateTimeFormatter CSV_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Salts keep the per-table random streams independent of each other
+    private static final long CUSTOMER_SALT = 0x1L;
+    private static final long PRODUCT_SALT = 0x2L;
+    private static final long ORDER_SALT = 0x3L;
+    private static final long ORDER_ITEM_SALT = 0x4L;
+
+    private final int scaleFactor;
+    private final long seed;
+    private final LocalDateTime endDate;
+    private final int historyDays;
+
+    public DatasetGenerator(int scaleFactor, long seed, LocalDateTime endDate, int historyDays) {
+        if (scaleFactor < 1) {
+            throw new IllegalArgumentException("Scale factor must be at least 1: " + scaleFactor);
+        }
+        this.scaleFactor = scaleFactor;
+        this.seed = seed;
+        this.endDate = endDate;
+        this.historyDays = historyDays;
+    }
+
+    public static DatasetGenerator fromProperties(Properties properties) {
+        int scaleFactor = Integer.parseInt(properties.getProperty("dataset.scale.factor"));
+        long seed = Long.parseLong(properties.getProperty("dataset.seed", "42"));
+        int historyDays = Integer.parseInt(properties.getProperty("dataset.history.days", "30"));
+        // Default to midnight today so two runs on the same day generate the same data
+        LocalDateTime endDate = LocalDate.now().atStartOfDay();
+        return new DatasetGenerator(scaleFactor, seed, endDate, historyDays);
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return properties.getProperty("dataset.scale.factor") != null;
+    }
+
+    public int getCustomerCount() {
+        return CUSTOMERS_PER_SF * scaleFactor;
+    }
+
+    public int getProductCount() {
+        return PRODUCTS_PER_SF * scaleFactor;
+    }
+
+    public int getOrderCount() {
+        return ORDERS_PER_SF * scaleFactor;
+    }
+
+    /** Upper bound of the generated OrderItemIDs; the actual item count is lower as orders have a random size. */
+    public int getMaxOrderItemID() {
+        return getOrderCount() * MAX_ITEMS_PER_ORDER;
+    }
+
+    public int[] getProductIds() {
+        return IntStream.rangeClosed(1, getProductCount()).toArray();
+    }
+
+    private SplittableRandom randomFor(long salt, long id) {
+        // SplitMix-style mixing so neighbouring ids do not produce correlated streams
+        long z = seed + salt * 0x9E3779B97F4A7C15L + id * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    Object[] customer(int customerID) {
+        SplittableRandom random = randomFor(CUSTOMER_SALT, customerID);
+        String first = pick(random, FIRST_NAMES);
+        String last = pick(random, LAST_NAMES);
+        String email = first.toLowerCase() + "." + last.toLowerCase() + customerID + "@example.com";
+        String address = (1 + random.nextInt(9999)) + " " + pick(random, STREETS) + " " + pick(random, CITIES);
+        return new Object[]{customerID, first + " " + last, email, pick(random, SEGMENTS), address};
+    }
+
+    Object[] product(int productID) {
+        SplittableRandom random = randomFor(PRODUCT_SALT, productID);
+        String brand = pick(random, BRANDS);
+        String category = pick(random, CATEGORIES);
+        String style = pick(random, STYLES);
+        double price = Math.round((9.99 + random.nextDouble() * 190) * 100) / 100.0;
+        int stock = 5 * (1 + random.nextInt(20));
+        return new Object[]{productID, brand, style + " " + category, category, style + " " + category.toLowerCase() + " by " + brand,
+                pick(random, COLORS), pick(random, SIZES), price, stock};
+    }
+
+    Object[] order(int orderID) {
+        SplittableRandom random = randomFor(ORDER_SALT, orderID);
+        int customerID = 1 + random.nextInt(getCustomerCount());
+        // Orders are spread over the history window in OrderID order, with some jitter
+        long historySeconds = historyDays * 86_400L;
+        long offset = (long) ((double) orderID / getOrderCount() * historySeconds) - random.nextInt(3_600);
+        LocalDateTime orderDate = endDate.minusSeconds(Math.max(0, historySeconds - offset));
+        return new Object[]{orderID, customerID, Timestamp.valueOf(orderDate), pick(random, STATUSES)};
+    }
+
+    int itemCount(int orderID) {
+        // Same first draw as orderItems(int)
+        return 1 + randomFor(ORDER_ITEM_SALT, orderID).nextInt(MAX_ITEMS_PER_ORDER);
+    }
+
+    public long getOrderItemCount() {
+        return IntStream.rangeClosed(1, getOrderCount()).parallel().mapToLong(this::itemCount).sum();
+    }
+
+    Stream<Object[]> orderItems(int orderID) {
+        SplittableRandom random = randomFor(ORDER_ITEM_SALT, orderID);
+        int items = 1 + random.nextInt(MAX_ITEMS_PER_ORDER);
+        int firstItemID = (orderID - 1) * MAX_ITEMS_PER_ORDER + 1;
+        Object[][] rows = new Object[items][];
+        for (int i = 0; i < items; i++) {
+            int productID = 1 + random.nextInt(getProductCount());
+            int quantity = 1 + random.nextInt(10);
+            rows[i] = new Object[]{firstItemID + i, orderID, productID, quantity};
+        }
+        return Arrays.stream(rows);
+    }
+
+    public Stream<Object[]> customers() {
+        return IntStream.rangeClosed(1, getCustomerCount()).parallel().mapToObj(this::customer);
+    }
+
+    public Stream<Object[]> products() {
+        return IntStream.rangeClosed(1, getProductCount()).parallel().mapToObj(this::product);
+    }
+
+    public Stream<Object[]> orders() {
+        return IntStream.rangeClosed(1, getOrderCount()).parallel().mapToObj(this::order);
+    }
+
+    public Stream<Object[]> orderItems() {
+        return IntStream.rangeClosed(1, getOrderCount()).parallel().boxed().flatMap(this::orderItems);
+    }
+
+    /**
+     * Writes one CSV per table into the directory, in the same layout as the bundled sample data files.
+     */
+    public void writeCsv(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        writeCsv(directory.resolve("customers_data.csv"), "CustomerID,CustomerName,Email,Segment,Address", customers(), new boolean[]{false, false, false, false, false});
+        writeCsv(directory.resolve("products_data.csv"), "ProductID,Brand,ProductName,Category,Description,Color,Size,Price,Stock", products(),
+                new boolean[]{false, true, true, true, true, true, true, false, false});
+        writeCsv(directory.resolve("orders_data.csv"), "OrderID,CustomerID,OrderDate,Status", orders(), new boolean[]{false, false, false, false});
+        writeCsv(directory.resolve("order_items_data.csv"), "OrderItemID,OrderID,ProductID,Quantity", orderItems(), new boolean[]{false, false, false, false});
+    }
+
+    private static void writeCsv(Path file, String header, Stream<Object[]> rows, boolean[] quoted) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(header);
+            writer.newLine();
+            // Formatting runs in parallel, the writes keep primary key order
+            rows.map(row -> toCsvLine(row, quoted)).forEachOrdered(line -> {
+                try {
+                    writer.write(line);
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        System.out.println("Dataset written to " + file);
+    }
+
+    private static String toCsvLine(Object[] row, boolean[] quoted) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            Object value = row[i];
+            if (value instanceof Timestamp) {
+                line.append(((Timestamp) value).toLocalDateTime().format(CSV_DATE_FORMAT));
+            } else if (quoted[i]) {
+                line.append('"').append(value).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Loads the dataset straight into Postgres. Each table is split into id ranges that are generated and
+     * inserted concurrently, one connection and one batched statement per range. Tables are loaded in
+     * foreign key order. Inserts skip existing rows, and tables that already hold all their rows are not
+     * loaded again, so an interrupted load can simply be restarted.
+     */
+    public void load(Properties properties) throws SQLException {
+        int threads = Integer.parseInt(properties.getProperty("dataset.load.threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int batchSize = Integer.parseInt(properties.getProperty("dataset.load.batch.size", "1000"));
+
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("user", properties.getProperty("db.user"));
+        connectionProperties.setProperty("password", properties.getProperty("db.password"));
+        // Let the driver collapse each batch into multi-row INSERT statements
+        connectionProperties.setProperty("reWriteBatchedInserts", "true");
+        String dbUrl = properties.getProperty("db.url");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (Connection connection = DriverManager.getConnection(dbUrl, connectionProperties)) {
+            if (!DataFeeder.isTableLoaded(connection, "customers", getCustomerCount())) {
+                loadTable(executor, threads, dbUrl, connectionProperties, batchSize, "customers", INSERT_CUSTOMER_SQL, getCustomerCount(),
+                        id -> Stream.<Object[]>of(customer((int) id)));
+            }
+            if (!DataFeeder.isTableLoaded(connection, "products", getProductCount())) {
+                loadTable(executor, threads, dbUrl, connectionProperties, batchSize, "products", INSERT_PRODUCT_SQL, getProductCount(),
+                        id -> Stream.<Object[]>of(product((int) id)));
+            }
+            if (!DataFeeder.isTableLoaded(connection, "orders", getOrderCount())) {
+                loadTable(executor, threads, dbUrl, connectionProperties, batchSize, "orders", INSERT_ORDER_SQL, getOrderCount(),
+                        id -> Stream.<Object[]>of(order((int) id)));
+            }
+            if (!DataFeeder.isTableLoaded(connection, "order_items", getOrderItemCount())) {
+                loadTable(executor, threads, dbUrl, connectionProperties, batchSize, "order_items", INSERT_ORDER_ITEM_SQL, getOrderCount(),
+                        id -> orderItems((int) id));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void loadTable(ExecutorService executor, int partitions, String dbUrl, Properties connectionProperties, int batchSize,
+                                  String table, String insertSQL, int count, LongFunction<Stream<Object[]>> rowsForId) throws SQLException {
+        long start = System.nanoTime();
+        int rangeSize = (count + partitions - 1) / partitions;
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int first = 1; first <= count; first += rangeSize) {
+            int from = first;
+            int to = Math.min(count, first + rangeSize - 1);
+            futures.add(executor.submit(() -> {
+                try (Connection connection = DriverManager.getConnection(dbUrl, connectionProperties)) {
+                    connection.setAutoCommit(false);
+                    Stream<Object[]> rows = IntStream.rangeClosed(from, to).boxed().flatMap(id -> rowsForId.apply(id));
+                    return insertBatched(connection, table, insertSQL, rows, batchSize);
+                }
+            }));
+        }
+
+        long rows = 0;
+        try {
+            for (Future<Long> future : futures) {
+                rows += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading " + table, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to load " + table, e.getCause());
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Loaded " + rows + " rows into " + table + " in " + millis + " ms");
+    }
+
+    private static long insertBatched(Connection connection, String table, String insertSQL, Stream<Object[]> rows, int batchSize) throws SQLException {
+        long inserted = 0;
+        try (PreparedStatement preparedStatement = connection.prepareStatement(insertSQL)) {
+            int pending = 0;
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                for (int i = 0; i < row.length; i++) {
+                    preparedStatement.setObject(i + 1, row[i]);
+                }
+                preparedStatement.addBatch();
+                if (++pending == batchSize) {
+                    flushBatch(connection, table, preparedStatement, pending);
+                    inserted += pending;
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                flushBatch(connection, table, preparedStatement, pending);
+                inserted += pending;
+            }
+        }
+        return inserted;
+    }
+
+    private static void flushBatch(Connection connection, String table, PreparedStatement preparedStatement, int rows) throws SQLException {
+        DataFeeder.executeBatchTimed(preparedStatement, table, rows);
+        DataFeeder.commitTimed(connection, rows);
+    }
+
+    @Override
+    public String toString() {
+        return "SF" + scaleFactor + " (" + getCustomerCount() + " customers, " + getProductCount() + " products, "
+                + getOrderCount() + " orders, seed " + seed + ")";
+    }
+}
@@ -0,0 +1,335 @@
+package com.example;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the DataFeeder write paths against a local database: PostgreSQL when {@code benchmark.url} is
+ * set or one answers on localhost, otherwise an in-memory H2 database in PostgreSQL mode. The tables are
+ * created in a separate {@code feeder_benchmark} schema from the {@code CREATE TABLE} statements in
+ * {@code terraform/aws.tf}.
+ *
+ * <p>It runs the CSV seeding methods, then loads the same generated orders and order items once per loading
+ * strategy (row at a time, JDBC batches, multi-row INSERTs and, on PostgreSQL, COPY), then runs the
+ * continuous one-order-per-transaction path, and prints rows/sec and latency per unit of work for each.
+ * Settings are system properties, e.g. {@code mvn -Pbenchmark compile exec:java -Dbenchmark.orders=50000}.
+ */
+public class FeederBenchmark {
+
+    private static final String SCHEMA = "feeder_benchmark";
+    private static final Pattern CREATE_TABLE = Pattern.compile("CREATE TABLE IF NOT EXISTS\\s+(\\w+)\\s*\\(.*?\\);", Pattern.DOTALL);
+
+    private static final String ORDER_COLUMNS = "orders (OrderID, CustomerID, OrderDate, Status)";
+    private static final String ORDER_ITEM_COLUMNS = "order_items (OrderItemID, OrderID, ProductID, Quantity)";
+
+    private final Connection connection;
+    private final boolean postgres;
+    private final int batchSize;
+    private final List<String> report = new ArrayList<>();
+
+    FeederBenchmark(Connection connection, int batchSize) throws SQLException {
+        this.connection = connection;
+        this.postgres = connection.isWrapperFor(PGConnection.class);
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int orders = Integer.getInteger("benchmark.orders", 20_000);
+        int liveOrders = Integer.getInteger("benchmark.live.orders", 2_000);
+        int batchSize = Integer.getInteger("benchmark.batch.size", 500);
+        String schemaFile = System.getProperty("benchmark.schema.file", "../../terraform/aws.tf");
+
+        try (Connection connection = connect()) {
+            FeederBenchmark benchmark = new FeederBenchmark(connection, batchSize);
+            System.out.println("Benchmarking against " + connection.getMetaData().getDatabaseProductName() + " "
+                    + connection.getMetaData().getDatabaseProductVersion());
+            benchmark.createSchema(readCreateTables(schemaFile));
+            benchmark.run(orders, liveOrders);
+            benchmark.printReport();
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        String url = System.getProperty("benchmark.url");
+        String user = System.getProperty("benchmark.user", "postgres");
+        String password = System.getProperty("benchmark.password", "postgres");
+        if (url != null) {
+            return DriverManager.getConnection(url, user, password);
+        }
+        try {
+            return DriverManager.getConnection("jdbc:postgresql://localhost:5432/postgres", user, password);
+        } catch (SQLException e) {
+            System.out.println("No local PostgreSQL (" + e.getMessage() + "), using H2 in PostgreSQL mode");
+            return DriverManager.getConnection("jdbc:h2:mem:feeder;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+        }
+    }
+
+    /**
+     * Returns the {@code CREATE TABLE} statements of the RDS setup, in the order they are run there.
+     */
+    static List<String> readCreateTables(String schemaFile) throws IOException {
+        String terraform = new String(Files.readAllBytes(Paths.get(schemaFile)), StandardCharsets.UTF_8);
+        List<String> statements = new ArrayList<>();
+        Matcher matcher = CREATE_TABLE.matcher(terraform);
+        while (matcher.find()) {
+            statements.add(matcher.group());
+        }
+        if (statements.isEmpty()) {
+            throw new IOException("No CREATE TABLE statements in " + schemaFile);
+        }
+        return statements;
+    }
+
+    void createSchema(List<String> createTables) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS " + SCHEMA);
+            connection.setSchema(SCHEMA);
+            // Drop in reverse creation order so foreign keys never block a drop
+            for (int i = createTables.size() - 1; i >= 0; i--) {
+                Matcher matcher = CREATE_TABLE.matcher(createTables.get(i));
+                matcher.find();
+                statement.execute("DROP TABLE IF EXISTS " + matcher.group(1));
+            }
+            for (String createTable : createTables) {
+                statement.execute(createTable);
+            }
+        }
+    }
+
+    void run(int orderCount, int liveOrders) throws SQLException, IOException {
+        connection.setAutoCommit(false);
+        benchmarkSeeding();
+
+        DatasetGenerator dataset = new DatasetGenerator(1, 42, LocalDateTime.now(), 30);
+        loadReferenceData(dataset);
+        List<Object[]> orders = new ArrayList<>(orderCount);
+        List<Object[]> orderItems = new ArrayList<>();
+        for (int orderID = 1; orderID <= orderCount; orderID++) {
+            orders.add(dataset.order(orderID));
+            dataset.orderItems(orderID).forEach(orderItems::add);
+        }
+
+        benchmarkLoad("row at a time", orders, orderItems, this::insertRowAtATime);
+        benchmarkLoad("JDBC batch", orders, orderItems, this::insertBatched);
+        benchmarkLoad("multi-row INSERT", orders, orderItems, this::insertMultiRow);
+        if (postgres) {
+            benchmarkLoad("COPY", orders, orderItems, this::copy);
+        }
+
+        benchmarkContinuous(dataset.getProductIds(), dataset.getOrderCount() + 1, dataset.getMaxOrderItemID() + 1, liveOrders);
+    }
+
+    private void benchmarkSeeding() throws SQLException {
+        List<String[]> customers = DataFeeder.readDataFromCSV("customers_sample_data.csv");
+        List<String[]> products = DataFeeder.readDataFromCSV("products_sample_data.csv");
+        List<String[]> orders = DataFeeder.readDataFromCSV("orders_sample_data.csv");
+        List<String[]> orderItems = DataFeeder.readDataFromCSV("order_items_sample_data.csv");
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long start = System.nanoTime();
+        long tableStart = System.nanoTime();
+        DataFeeder.insertCustomerData(connection, "INSERT INTO customers (CustomerID, CustomerName, Email, Segment, Address) VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING", customers);
+        connection.commit();
+        tableStart = record(latency, tableStart);
+        DataFeeder.insertProductData(connection, "INSERT INTO products (ProductID,Brand,ProductName,Category,Description,Color,Size,Price,Stock) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING", products);
+        connection.commit();
+        tableStart = record(latency, tableStart);
+        DataFeeder.insertOrderData(connection, "INSERT INTO " + ORDER_COLUMNS + " VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING", orders);
+        connection.commit();
+        tableStart = record(latency, tableStart);
+        DataFeeder.insertOrderItemsData(connection, "INSERT INTO " + ORDER_ITEM_COLUMNS + " VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING", orderItems);
+        connection.commit();
+        record(latency, tableStart);
+        addResult("CSV seeding", "table", customers.size() + products.size() + orders.size() + orderItems.size(), start, latency);
+    }
+
+    private void loadReferenceData(DatasetGenerator dataset) throws SQLException {
+        insertInBatches("INSERT INTO customers (CustomerID, CustomerName, Email, Segment, Address) VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING",
+                dataset.customers()::iterator, new LatencyHistogram());
+        insertInBatches("INSERT INTO products (ProductID,Brand,ProductName,Category,Description,Color,Size,Price,Stock) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING",
+                dataset.products()::iterator, new LatencyHistogram());
+    }
+
+    private interface Loader {
+        void load(String columns, int columnCount, Iterable<Object[]> rows, LatencyHistogram latency) throws SQLException, IOException;
+    }
+
+    private void benchmarkLoad(String name, List<Object[]> orders, List<Object[]> orderItems, Loader loader) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM order_items");
+            statement.executeUpdate("DELETE FROM orders");
+        }
+        connection.commit();
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long start = System.nanoTime();
+        loader.load(ORDER_COLUMNS, 4, orders, latency);
+        loader.load(ORDER_ITEM_COLUMNS, 4, orderItems, latency);
+        addResult(name, batchSize + " rows", orders.size() + orderItems.size(), start, latency);
+    }
+
+    private void insertRowAtATime(String columns, int columnCount, Iterable<Object[]> rows, LatencyHistogram latency) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + columns + " VALUES " + placeholders(columnCount, 1))) {
+            int pending = 0;
+            long chunkStart = System.nanoTime();
+            for (Object[] row : rows) {
+                bind(statement, row, 0);
+                statement.executeUpdate();
+                if (++pending == batchSize) {
+                    connection.commit();
+                    chunkStart = record(latency, chunkStart);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                connection.commit();
+                record(latency, chunkStart);
+            }
+        }
+    }
+
+    private void insertBatched(String columns, int columnCount, Iterable<Object[]> rows, LatencyHistogram latency) throws SQLException {
+        insertInBatches("INSERT INTO " + columns + " VALUES " + placeholders(columnCount, 1), rows, latency);
+    }
+
+    private void insertInBatches(String insertSQL, Iterable<Object[]> rows, LatencyHistogram latency) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(insertSQL)) {
+            int pending = 0;
+            long chunkStart = System.nanoTime();
+            for (Object[] row : rows) {
+                bind(statement, row, 0);
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    statement.executeBatch();
+                    connection.commit();
+                    chunkStart = record(latency, chunkStart);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+                connection.commit();
+                record(latency, chunkStart);
+            }
+        }
+    }
+
+    private void insertMultiRow(String columns, int columnCount, Iterable<Object[]> rows, LatencyHistogram latency) throws SQLException {
+        // PostgreSQL accepts at most 32767 bind parameters per statement
+        int rowsPerStatement = Math.min(batchSize, Short.MAX_VALUE / columnCount);
+        List<Object[]> chunk = new ArrayList<>(rowsPerStatement);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO " + columns + " VALUES " + placeholders(columnCount, rowsPerStatement))) {
+            for (Object[] row : rows) {
+                chunk.add(row);
+                if (chunk.size() == rowsPerStatement) {
+                    insertChunk(statement, chunk, columnCount, latency);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO " + columns + " VALUES " + placeholders(columnCount, chunk.size()))) {
+                insertChunk(statement, chunk, columnCount, latency);
+            }
+        }
+    }
+
+    private void insertChunk(PreparedStatement statement, List<Object[]> chunk, int columnCount, LatencyHistogram latency) throws SQLException {
+        long chunkStart = System.nanoTime();
+        for (int i = 0; i < chunk.size(); i++) {
+            bind(statement, chunk.get(i), i * columnCount);
+        }
+        statement.executeUpdate();
+        connection.commit();
+        record(latency, chunkStart);
+        chunk.clear();
+    }
+
+    private void copy(String columns, int columnCount, Iterable<Object[]> rows, LatencyHistogram latency) throws SQLException, IOException {
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        String copySQL = "COPY " + columns + " FROM STDIN WITH (FORMAT csv)";
+        StringBuilder csv = new StringBuilder();
+        int pending = 0;
+        long chunkStart = System.nanoTime();
+        for (Object[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                csv.append(i == 0 ? "" : ",").append(row[i]);
+            }
+            csv.append('\n');
+            if (++pending == batchSize) {
+                copyManager.copyIn(copySQL, new StringReader(csv.toString()));
+                connection.commit();
+                chunkStart = record(latency, chunkStart);
+                csv.setLength(0);
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            copyManager.copyIn(copySQL, new StringReader(csv.toString()));
+            connection.commit();
+            record(latency, chunkStart);
+        }
+    }
+
+    private void benchmarkContinuous(int[] productIds, int firstOrderID, int firstOrderItemID, int liveOrders) throws SQLException {
+        OrderGenerator generator = new OrderGenerator(productIds, firstOrderID, firstOrderItemID, new Random(42));
+        LatencyHistogram latency = new LatencyHistogram();
+        long rows = 0;
+        long start = System.nanoTime();
+        try (OperationExecutor executor = new OperationExecutor(connection)) {
+            for (int i = 0; i < liveOrders; i++) {
+                long orderStart = System.nanoTime();
+                for (Operation operation : generator.nextOrder(System.currentTimeMillis(), LocalDateTime.now())) {
+                    rows += executor.execute(operation);
+                }
+                connection.commit();
+                record(latency, orderStart);
+            }
+        }
+        addResult("continuous feed", "order", rows, start, latency);
+    }
+
+    private static String placeholders(int columnCount, int rowCount) {
+        String row = "(" + String.join(", ", Collections.nCopies(columnCount, "?")) + ")";
+        return String.join(", ", Collections.nCopies(rowCount, row));
+    }
+
+    private static void bind(PreparedStatement statement, Object[] row, int offset) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            statement.setObject(offset + i + 1, row[i]);
+        }
+    }
+
+    private static long record(LatencyHistogram latency, long start) {
+        long now = System.nanoTime();
+        latency.record(now - start);
+        return now;
+    }
+
+    private void addResult(String name, String unit, long rows, long start, LatencyHistogram latency) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        String result = String.format("%-18s %9d %10.0f %-10s %9.2f %9.2f %9.2f", name, rows, rows / seconds, unit,
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6);
+        // Progress only, the results are printed together at the end
+        System.out.println("Finished " + name);
+        report.add(result);
+    }
+
+    void printReport() {
+        System.out.println();
+        System.out.println(String.format("%-18s %9s %10s %-10s %9s %9s %9s", "path", "rows", "rows/s", "per", "p50 ms", "p99 ms", "max ms"));
+        report.forEach(System.out::println);
+    }
+}
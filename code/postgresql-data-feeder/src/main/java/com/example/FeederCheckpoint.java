@@ -0,0 +1,66 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Persists the next OrderID and OrderItemID of the continuous feeder ({@code orderId,orderItemId}), so a
+ * restarted feeder carries on where the previous run stopped. The file is replaced atomically and written
+ * at most once per {@code checkpoint.interval.ms}.
+ */
+public class FeederCheckpoint {
+
+    private final Path file;
+    private final Path tempFile;
+    private final long intervalMs;
+    private long lastSave;
+
+    public FeederCheckpoint(String fileName, long intervalMs) {
+        this.file = Paths.get(fileName);
+        this.tempFile = Paths.get(fileName + ".tmp");
+        this.intervalMs = intervalMs;
+    }
+
+    public static FeederCheckpoint fromProperties(Properties properties) {
+        String fileName = properties.getProperty("checkpoint.file");
+        if (fileName == null) {
+            return null;
+        }
+        return new FeederCheckpoint(fileName, Long.parseLong(properties.getProperty("checkpoint.interval.ms", "1000")));
+    }
+
+    /**
+     * Returns the saved {@code {orderID, orderItemID}}, or {@code null} when there is no usable checkpoint.
+     */
+    public int[] load() {
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty()) {
+                return null;
+            }
+            String[] values = lines.get(0).split(",");
+            return new int[]{Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim())};
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable checkpoint " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void saveIfDue(int nextOrderID, int nextOrderItemID) throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastSave >= intervalMs) {
+            save(nextOrderID, nextOrderItemID);
+            lastSave = now;
+        }
+    }
+
+    public void save(int nextOrderID, int nextOrderItemID) throws IOException {
+        Files.write(tempFile, (nextOrderID + "," + nextOrderItemID).getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,252 @@
+package com.example;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-path metrics for the DataFeeder: per-table statement latency, rows written and errors, plus
+ * commit latency and transaction size. A summary is printed every {@code metrics.report.interval.seconds}
+ * (default 10), the values are registered on JMX and, when {@code metrics.http.port} is set, served in
+ * Prometheus text format on {@code /metrics}.
+ */
+public class FeederMetrics implements FeederMetricsMXBean {
+
+    private static final FeederMetrics INSTANCE = new FeederMetrics();
+
+    // Prometheus bucket bounds, in nanoseconds for latencies and rows for transaction sizes
+    private static final long[] LATENCY_BOUNDS_NANOS = {
+            250_000L, 500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L,
+            50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L};
+    private static final long[] TRANSACTION_SIZE_BOUNDS = {1, 2, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+    private static class TableStats {
+        final LatencyHistogram statementLatency = new LatencyHistogram();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+    }
+
+    private final Map<String, TableStats> tables = new ConcurrentHashMap<>();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final LatencyHistogram transactionSize = new LatencyHistogram();
+    private final Map<String, Double> gauges = new ConcurrentHashMap<>();
+
+    private volatile double rowsPerSecond;
+    private long lastReportRows;
+    private long lastReportNanos = System.nanoTime();
+    private ScheduledExecutorService reporter;
+    private HttpServer httpServer;
+
+    private FeederMetrics() {
+    }
+
+    public static FeederMetrics get() {
+        return INSTANCE;
+    }
+
+    private TableStats table(String table) {
+        return tables.computeIfAbsent(table, t -> new TableStats());
+    }
+
+    public void recordStatement(String table, long nanos, int rows) {
+        TableStats stats = table(table);
+        stats.statementLatency.record(nanos);
+        stats.rows.addAndGet(rows);
+    }
+
+    public void recordCommit(long nanos, int rows) {
+        commitLatency.record(nanos);
+        transactionSize.record(rows);
+    }
+
+    public void recordError(String table) {
+        table(table).errors.incrementAndGet();
+    }
+
+    public void setGauge(String name, double value) {
+        gauges.put(name, value);
+    }
+
+    public synchronized void start(Properties properties) {
+        if (reporter != null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("com.example:type=DataFeeder"));
+        } catch (Exception e) {
+            System.out.println("Could not register DataFeeder metrics on JMX: " + e.getMessage());
+        }
+
+        long interval = Long.parseLong(properties.getProperty("metrics.report.interval.seconds", "10"));
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.SECONDS);
+
+        String port = properties.getProperty("metrics.http.port");
+        if (port != null) {
+            try {
+                httpServer = HttpServer.create(new InetSocketAddress(Integer.parseInt(port)), 0);
+                httpServer.createContext("/metrics", exchange -> {
+                    byte[] body = toPrometheusText().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                httpServer.start();
+                System.out.println("Serving DataFeeder metrics on http://localhost:" + port + "/metrics");
+            } catch (IOException e) {
+                System.out.println("Could not start metrics endpoint on port " + port + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private long totalRows() {
+        long total = 0;
+        for (TableStats stats : tables.values()) {
+            total += stats.rows.get();
+        }
+        return total;
+    }
+
+    synchronized void report() {
+        long now = System.nanoTime();
+        long rows = totalRows();
+        rowsPerSecond = (rows - lastReportRows) * 1e9 / Math.max(1, now - lastReportNanos);
+        lastReportRows = rows;
+        lastReportNanos = now;
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("DataFeeder metrics: %.1f rows/s, %d commits (p50 %.2f ms, p99 %.2f ms), mean transaction size %.1f rows",
+                rowsPerSecond, commitLatency.getCount(), getCommitLatencyP50Millis(), getCommitLatencyP99Millis(), getMeanTransactionSize()));
+        for (Map.Entry<String, Double> gauge : new TreeMap<>(gauges).entrySet()) {
+            summary.append(String.format(", %s %.1f", gauge.getKey(), gauge.getValue()));
+        }
+        for (Map.Entry<String, TableStats> entry : new TreeMap<>(tables).entrySet()) {
+            TableStats stats = entry.getValue();
+            summary.append(String.format("%n  %-12s rows=%d errors=%d statement p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                    entry.getKey(), stats.rows.get(), stats.errors.get(),
+                    toMillis(stats.statementLatency.getPercentile(50)),
+                    toMillis(stats.statementLatency.getPercentile(99)),
+                    toMillis(stats.statementLatency.getMax())));
+        }
+        System.out.println(summary);
+    }
+
+    String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        Map<String, TableStats> sorted = new TreeMap<>(tables);
+
+        text.append("# TYPE datafeeder_rows_written_total counter\n");
+        sorted.forEach((table, stats) -> text.append("datafeeder_rows_written_total{table=\"").append(table).append("\"} ")
+                .append(stats.rows.get()).append('\n'));
+        text.append("# TYPE datafeeder_errors_total counter\n");
+        sorted.forEach((table, stats) -> text.append("datafeeder_errors_total{table=\"").append(table).append("\"} ")
+                .append(stats.errors.get()).append('\n'));
+        text.append("# TYPE datafeeder_rows_per_second gauge\n");
+        text.append("datafeeder_rows_per_second ").append(rowsPerSecond).append('\n');
+        new TreeMap<>(gauges).forEach((name, value) -> text.append("# TYPE datafeeder_").append(name).append(" gauge\n")
+                .append("datafeeder_").append(name).append(' ').append(value).append('\n'));
+
+        text.append("# TYPE datafeeder_statement_latency_seconds histogram\n");
+        sorted.forEach((table, stats) -> appendHistogram(text, "datafeeder_statement_latency_seconds", "table=\"" + table + "\",",
+                stats.statementLatency, LATENCY_BOUNDS_NANOS, 1e-9));
+        text.append("# TYPE datafeeder_commit_latency_seconds histogram\n");
+        appendHistogram(text, "datafeeder_commit_latency_seconds", "", commitLatency, LATENCY_BOUNDS_NANOS, 1e-9);
+        text.append("# TYPE datafeeder_transaction_rows histogram\n");
+        appendHistogram(text, "datafeeder_transaction_rows", "", transactionSize, TRANSACTION_SIZE_BOUNDS, 1);
+        return text.toString();
+    }
+
+    private static void appendHistogram(StringBuilder text, String name, String labels, LatencyHistogram histogram,
+                                        long[] bounds, double scale) {
+        long[] cumulative = histogram.getCumulativeCounts(bounds);
+        for (int i = 0; i < bounds.length; i++) {
+            text.append(name).append("_bucket{").append(labels).append("le=\"").append(bounds[i] * scale).append("\"} ")
+                    .append(cumulative[i]).append('\n');
+        }
+        text.append(name).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+        String plainLabels = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        text.append(name).append("_sum").append(plainLabels).append(' ').append(histogram.getSum() * scale).append('\n');
+        text.append(name).append("_count").append(plainLabels).append(' ').append(histogram.getCount()).append('\n');
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    @Override
+    public Map<String, Long> getRowsWritten() {
+        Map<String, Long> rows = new TreeMap<>();
+        tables.forEach((table, stats) -> rows.put(table, stats.rows.get()));
+        return rows;
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> errors = new TreeMap<>();
+        tables.forEach((table, stats) -> errors.put(table, stats.errors.get()));
+        return errors;
+    }
+
+    @Override
+    public Map<String, Double> getGauges() {
+        return new TreeMap<>(gauges);
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    @Override
+    public Map<String, Double> getStatementLatencyP50Millis() {
+        Map<String, Double> latencies = new TreeMap<>();
+        tables.forEach((table, stats) -> latencies.put(table, toMillis(stats.statementLatency.getPercentile(50))));
+        return latencies;
+    }
+
+    @Override
+    public Map<String, Double> getStatementLatencyP99Millis() {
+        Map<String, Double> latencies = new TreeMap<>();
+        tables.forEach((table, stats) -> latencies.put(table, toMillis(stats.statementLatency.getPercentile(99))));
+        return latencies;
+    }
+
+    @Override
+    public double getCommitLatencyP50Millis() {
+        return toMillis(commitLatency.getPercentile(50));
+    }
+
+    @Override
+    public double getCommitLatencyP99Millis() {
+        return toMillis(commitLatency.getPercentile(99));
+    }
+
+    @Override
+    public long getCommits() {
+        return commitLatency.getCount();
+    }
+
+    @Override
+    public double getMeanTransactionSize() {
+        return transactionSize.getMean();
+    }
+}
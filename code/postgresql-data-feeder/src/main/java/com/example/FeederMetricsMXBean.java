@@ -0,0 +1,30 @@
+package com.example;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link FeederMetrics}, registered as {@code com.example:type=DataFeeder}.
+ * Per-table values are keyed by table name; latencies are in milliseconds.
+ */
+public interface FeederMetricsMXBean {
+
+    Map<String, Long> getRowsWritten();
+
+    Map<String, Long> getErrors();
+
+    double getRowsPerSecond();
+
+    Map<String, Double> getGauges();
+
+    Map<String, Double> getStatementLatencyP50Millis();
+
+    Map<String, Double> getStatementLatencyP99Millis();
+
+    double getCommitLatencyP50Millis();
+
+    double getCommitLatencyP99Millis();
+
+    long getCommits();
+
+    double getMeanTransactionSize();
+}
@@ -0,0 +1,172 @@
+package com.example;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Fills the orders and order_items tables with history before the live feed starts.
+ *
+ * <p>Orders are spread from {@code backfill.days} days ago (default 30) up to now, at an average of
+ * {@code backfill.orders.per.hour} (default 3600, the live rate) shaped by a diurnal and a weekly profile.
+ * They are written as fast as the database accepts, in batches of {@code backfill.batch.size} rows per
+ * transaction. Because the backfill takes time, it repeats for the span that passed while it ran until it
+ * has caught up with the clock; the live feed then takes over from that point without a gap.
+ *
+ * <p>A restart resumes after the latest OrderDate already in the window instead of writing it again. Recorded
+ * operations carry their simulated time, the OrderDate, so a replay keeps the historical pace.
+ */
+public class HistoricalBackfill {
+
+    // Relative order volume per hour of day (0-23) and per day of week (Monday-Sunday)
+    private static final double[] HOURLY_PROFILE = {
+            0.2, 0.1, 0.1, 0.1, 0.1, 0.2, 0.4, 0.7, 1.0, 1.2, 1.3, 1.4,
+            1.6, 1.5, 1.4, 1.4, 1.5, 1.7, 1.9, 2.0, 1.8, 1.4, 0.9, 0.5};
+    private static final double[] WEEKLY_PROFILE = {0.9, 0.85, 0.9, 0.95, 1.1, 1.2, 1.1};
+    private static final double HOURLY_MEAN = mean(HOURLY_PROFILE);
+    private static final double WEEKLY_MEAN = mean(WEEKLY_PROFILE);
+
+    // Stop catching up once the remaining span is shorter than this
+    private static final long CATCH_UP_THRESHOLD_MS = 1000;
+
+    private final Connection connection;
+    private final OrderGenerator orders;
+    private final Random random;
+    private final double ordersPerHour;
+    private final int days;
+    private final int batchSize;
+
+    private OperationLog.Writer recorder;
+    // Operations of the open transaction, recorded once it commits
+    private final List<Operation> uncommitted = new ArrayList<>();
+
+    public HistoricalBackfill(Connection connection, Properties properties, OrderGenerator orders, Random random) {
+        this.connection = connection;
+        this.orders = orders;
+        this.random = random;
+        this.ordersPerHour = Double.parseDouble(properties.getProperty("backfill.orders.per.hour", "3600"));
+        this.days = Integer.parseInt(properties.getProperty("backfill.days", "30"));
+        this.batchSize = Integer.parseInt(properties.getProperty("backfill.batch.size", "1000"));
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return Boolean.parseBoolean(properties.getProperty("backfill.enabled", "false"));
+    }
+
+    public void setRecorder(OperationLog.Writer recorder) {
+        this.recorder = recorder;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Orders per millisecond at the given local time, averaging {@code ordersPerHour} over a week.
+     */
+    double rateAt(LocalDateTime time) {
+        double hourly = HOURLY_PROFILE[time.getHour()] / HOURLY_MEAN;
+        double weekly = WEEKLY_PROFILE[time.getDayOfWeek().getValue() - 1] / WEEKLY_MEAN;
+        return ordersPerHour * hourly * weekly / 3_600_000.0;
+    }
+
+    /**
+     * Returns where the backfill starts: just after the latest order at or after {@code windowStartMillis},
+     * or the window start when there is none.
+     */
+    long resumeFrom(long windowStartMillis) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT MAX(OrderDate) FROM orders WHERE OrderDate >= ?")) {
+            statement.setTimestamp(1, Timestamp.valueOf(toLocalDateTime(windowStartMillis)));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Timestamp latest = resultSet.next() ? resultSet.getTimestamp(1) : null;
+                if (latest == null) {
+                    return windowStartMillis;
+                }
+                long latestMillis = latest.toLocalDateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                System.out.println("Orders found up to " + latest.toLocalDateTime() + ", resuming the backfill from there");
+                return latestMillis + 1;
+            }
+        }
+    }
+
+    public void run() throws SQLException, IOException {
+        long startNanos = System.nanoTime();
+        long fromMillis = resumeFrom(System.currentTimeMillis() - days * 86_400_000L);
+        connection.setAutoCommit(false);
+        long backfilled = 0;
+        try (OperationExecutor executor = new OperationExecutor(connection)) {
+            long toMillis = System.currentTimeMillis();
+            while (toMillis - fromMillis > CATCH_UP_THRESHOLD_MS) {
+                backfilled += backfill(executor, fromMillis, toMillis);
+                System.out.println("Backfilled up to " + toLocalDateTime(toMillis) + ", " + backfilled + " orders so far");
+                fromMillis = toMillis;
+                toMillis = System.currentTimeMillis();
+            }
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println(String.format("Backfill done: %d orders in %.1f s (%.0f orders/s), switching to live mode at OrderID %d",
+                backfilled, seconds, backfilled / Math.max(seconds, 1e-9), orders.getNextOrderID()));
+    }
+
+    private long backfill(OperationExecutor executor, long fromMillis, long toMillis) throws SQLException, IOException {
+        long count = 0;
+        double time = fromMillis;
+        while (true) {
+            // Exponential inter-arrival times at the rate of the current hour
+            LocalDateTime orderDate = toLocalDateTime((long) time);
+            time += -Math.log(1 - random.nextDouble()) / rateAt(orderDate);
+            if (time >= toMillis) {
+                break;
+            }
+            for (Operation operation : orders.nextOrder((long) time, toLocalDateTime((long) time))) {
+                if (recorder != null) {
+                    uncommitted.add(operation);
+                }
+                executor.addBatch(operation);
+            }
+            count++;
+            if (executor.getBatchedCount() >= batchSize) {
+                flush(executor);
+            }
+        }
+        flush(executor);
+        return count;
+    }
+
+    private void flush(OperationExecutor executor) throws SQLException, IOException {
+        int rows = executor.getBatchedCount();
+        if (rows == 0) {
+            return;
+        }
+        try {
+            executor.flush();
+            DataFeeder.commitTimed(connection, rows);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        for (Operation operation : uncommitted) {
+            recorder.append(operation);
+        }
+        uncommitted.clear();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        // Same wall-clock time as LocalDateTime.now() uses for live orders
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
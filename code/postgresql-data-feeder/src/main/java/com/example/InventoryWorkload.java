@@ -0,0 +1,112 @@
+package com.example;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Restocks for the stock updates of the live feed. The {@link OrderGenerator} takes every order item's
+ * quantity off products.Stock in the order's transaction; this workload checks the products below the
+ * restock threshold every {@code inventory.restock.interval.ms}, and a restock event may put each one back
+ * up. Together they feed the Usecase1 low_stock_alerts statement with changelog traffic instead of a
+ * one-off snapshot.
+ */
+public class InventoryWorkload implements Runnable {
+
+    private static final String LOW_STOCK_SQL = "SELECT ProductID FROM products WHERE Stock < ?";
+
+    private final String dbUrl;
+    private final String dbUser;
+    private final String dbPassword;
+    private final Random random;
+
+    private final long restockIntervalMs;
+    private final int restockThreshold;
+    private final double restockProbability;
+    private final int restockQuantity;
+    private final double zipfExponent;
+
+    private OperationLog.Writer recorder;
+
+    public InventoryWorkload(Properties properties, Random random) {
+        this.dbUrl = properties.getProperty("db.url");
+        this.dbUser = properties.getProperty("db.user");
+        this.dbPassword = properties.getProperty("db.password");
+        this.random = random;
+        this.restockIntervalMs = Long.parseLong(properties.getProperty("inventory.restock.interval.ms", "1000"));
+        this.restockThreshold = Integer.parseInt(properties.getProperty("inventory.restock.threshold", "50"));
+        this.restockProbability = Double.parseDouble(properties.getProperty("inventory.restock.probability", "0.1"));
+        this.restockQuantity = Integer.parseInt(properties.getProperty("inventory.restock.quantity", "200"));
+        this.zipfExponent = Double.parseDouble(properties.getProperty("inventory.zipf.exponent", "0.99"));
+    }
+
+    public void setRecorder(OperationLog.Writer recorder) {
+        this.recorder = recorder;
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return Boolean.parseBoolean(properties.getProperty("inventory.enabled", "false"));
+    }
+
+    /**
+     * Skew of the hot-product distribution the order items are drawn from.
+     */
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    @Override
+    public void run() {
+        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+             PreparedStatement lowStockStatement = connection.prepareStatement(LOW_STOCK_SQL);
+             OperationExecutor executor = new OperationExecutor(connection)) {
+            long restocks = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    for (int productID : lowStockProducts(lowStockStatement)) {
+                        if (random.nextDouble() >= restockProbability) {
+                            continue;
+                        }
+                        Operation restock = Operation.restock(System.currentTimeMillis(), productID, restockQuantity);
+                        executor.execute(restock);
+                        // Auto-commit: recorded once the statement has succeeded, so a failed one is not replayed
+                        record(restock);
+                        restocks++;
+                        System.out.println("Product " + productID + " restocked with " + restockQuantity + " units");
+                        if (restocks % 100 == 0) {
+                            System.out.println("Inventory workload: " + restocks + " restocks");
+                        }
+                    }
+                } catch (SQLException e) {
+                    // Already counted against products: log it and go on at the next check
+                    System.out.println("Inventory workload: restock check failed: " + e.getMessage());
+                }
+                Thread.sleep(restockIntervalMs);
+            }
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Integer> lowStockProducts(PreparedStatement statement) throws SQLException {
+        statement.setInt(1, restockThreshold);
+        List<Integer> productIds = new ArrayList<>();
+        try (ResultSet resultSet = DataFeeder.queryTimed(statement, "products")) {
+            while (resultSet.next()) {
+                productIds.add(resultSet.getInt(1));
+            }
+        }
+        return productIds;
+    }
+
+    private void record(Operation operation) throws IOException {
+        if (recorder != null) {
+            recorder.append(operation);
+        }
+    }
+}
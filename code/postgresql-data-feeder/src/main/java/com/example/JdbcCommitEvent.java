@@ -0,0 +1,27 @@
+package com.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One transaction commit of the feeder.
+ */
+@Name("com.example.feeder.JdbcCommit")
+@Label("JDBC Commit")
+@Category({"Data Feeder", "JDBC"})
+@Description("Commit of a transaction")
+@Threshold("5 ms")
+@StackTrace(false)
+class JdbcCommitEvent extends jdk.jfr.Event {
+
+    @Label("Rows")
+    @Description("Rows written in the transaction")
+    int rows;
+
+    @Label("Failure")
+    String failure;
+}
@@ -0,0 +1,32 @@
+package com.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One JDBC statement or batch execution of the feeder.
+ */
+@Name("com.example.feeder.JdbcStatement")
+@Label("JDBC Statement")
+@Category({"Data Feeder", "JDBC"})
+@Description("Execution of a statement or a statement batch against a table")
+@Threshold("5 ms")
+@StackTrace(false)
+class JdbcStatementEvent extends jdk.jfr.Event {
+
+    @Label("Table")
+    String table;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Batch")
+    boolean batch;
+
+    @Label("Failure")
+    String failure;
+}
@@ -0,0 +1,100 @@
+package com.example;
+
+import java.time.LocalDateTime;
+
+/**
+ * One generated write against the source database, with the wall-clock time it was meant to run at.
+ * Operations are what the feeder records to and replays from an {@link OperationLog}.
+ */
+public class Operation {
+
+    public enum Type {
+        INSERT_ORDER("orders"),
+        INSERT_ORDER_ITEM("order_items"),
+        DECREMENT_STOCK("products"),
+        RESTOCK("products"),
+        UPDATE_ORDER_STATUS("orders");
+
+        private final String table;
+
+        Type(String table) {
+            this.table = table;
+        }
+
+        public String getTable() {
+            return table;
+        }
+    }
+
+    private final Type type;
+    private final long timeMillis;
+    private final int[] values;
+    private final LocalDateTime orderDate;
+    private final String status;
+
+    private Operation(Type type, long timeMillis, int[] values, LocalDateTime orderDate, String status) {
+        this.type = type;
+        this.timeMillis = timeMillis;
+        this.values = values;
+        this.orderDate = orderDate;
+        this.status = status;
+    }
+
+    public static Operation insertOrder(long timeMillis, int orderID, int customerID, LocalDateTime orderDate, String status) {
+        return new Operation(Type.INSERT_ORDER, timeMillis, new int[]{orderID, customerID}, orderDate, status);
+    }
+
+    public static Operation insertOrderItem(long timeMillis, int orderItemID, int orderID, int productID, int quantity) {
+        return new Operation(Type.INSERT_ORDER_ITEM, timeMillis, new int[]{orderItemID, orderID, productID, quantity}, null, null);
+    }
+
+    public static Operation decrementStock(long timeMillis, int productID, int quantity) {
+        return new Operation(Type.DECREMENT_STOCK, timeMillis, new int[]{productID, quantity}, null, null);
+    }
+
+    public static Operation restock(long timeMillis, int productID, int quantity) {
+        return new Operation(Type.RESTOCK, timeMillis, new int[]{productID, quantity}, null, null);
+    }
+
+    public static Operation updateOrderStatus(long timeMillis, int orderID, String status) {
+        return new Operation(Type.UPDATE_ORDER_STATUS, timeMillis, new int[]{orderID}, null, status);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * The integer columns of the operation, in the order of the factory method arguments.
+     */
+    public int[] getValues() {
+        return values;
+    }
+
+    public LocalDateTime getOrderDate() {
+        return orderDate;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(type.name()).append('@').append(timeMillis);
+        for (int value : values) {
+            text.append(',').append(value);
+        }
+        if (orderDate != null) {
+            text.append(',').append(orderDate);
+        }
+        if (status != null) {
+            text.append(',').append(status);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies {@link Operation}s to the database, one statement at a time or in JDBC batches. The caller owns
+ * the connection and its transaction boundaries.
+ */
+public class OperationExecutor implements AutoCloseable {
+
+    private static final Map<Operation.Type, String> SQL = new EnumMap<>(Operation.Type.class);
+
+    static {
+        SQL.put(Operation.Type.INSERT_ORDER, "INSERT INTO orders (OrderID, CustomerID, OrderDate, Status) VALUES (?, ?, ?, ?)");
+        SQL.put(Operation.Type.INSERT_ORDER_ITEM, "INSERT INTO order_items (OrderItemID, OrderID, ProductID, Quantity) VALUES (?, ?, ?, ?)");
+        SQL.put(Operation.Type.DECREMENT_STOCK, "UPDATE products SET Stock = GREATEST(Stock - ?, 0) WHERE ProductID = ?");
+        SQL.put(Operation.Type.RESTOCK, "UPDATE products SET Stock = Stock + ? WHERE ProductID = ?");
+        SQL.put(Operation.Type.UPDATE_ORDER_STATUS, "UPDATE orders SET Status = ? WHERE OrderID = ?");
+    }
+
+    private final Connection connection;
+    private final Map<Operation.Type, PreparedStatement> statements = new EnumMap<>(Operation.Type.class);
+    private final Map<Operation.Type, Integer> batched = new EnumMap<>(Operation.Type.class);
+    // Highest Operation.Type ordinal batched for each row, keyed by table and id
+    private final Map<String, Integer> batchedRows = new HashMap<>();
+    private int flushedEarly;
+
+    public OperationExecutor(Connection connection) {
+        this.connection = connection;
+    }
+
+    private PreparedStatement statement(Operation.Type type) throws SQLException {
+        PreparedStatement statement = statements.get(type);
+        if (statement == null) {
+            statement = connection.prepareStatement(SQL.get(type));
+            statements.put(type, statement);
+        }
+        return statement;
+    }
+
+    private PreparedStatement bind(Operation operation) throws SQLException {
+        PreparedStatement statement = statement(operation.getType());
+        int[] values = operation.getValues();
+        switch (operation.getType()) {
+            case INSERT_ORDER:
+                statement.setInt(1, values[0]);
+                statement.setInt(2, values[1]);
+                statement.setTimestamp(3, Timestamp.valueOf(operation.getOrderDate()));
+                statement.setString(4, operation.getStatus());
+                break;
+            case DECREMENT_STOCK:
+            case RESTOCK:
+                // Quantity first, ProductID in the WHERE clause
+                statement.setInt(1, values[1]);
+                statement.setInt(2, values[0]);
+                break;
+            case UPDATE_ORDER_STATUS:
+                statement.setString(1, operation.getStatus());
+                statement.setInt(2, values[0]);
+                break;
+            default:
+                for (int i = 0; i < values.length; i++) {
+                    statement.setInt(i + 1, values[i]);
+                }
+        }
+        return statement;
+    }
+
+    /**
+     * Executes a single operation and returns the number of rows it changed.
+     */
+    public int execute(Operation operation) throws SQLException {
+        return DataFeeder.executeTimed(bind(operation), operation.getType().getTable());
+    }
+
+    /**
+     * Adds an operation to the batch of its type. When a batch that runs later already holds an operation on
+     * the same row, as a RESTOCK before a DECREMENT_STOCK of the same product, the pending batches are
+     * executed first, so every row sees its operations in the order they were added.
+     */
+    public void addBatch(Operation operation) throws SQLException {
+        String row = operation.getType().getTable() + "/" + operation.getValues()[0];
+        int ordinal = operation.getType().ordinal();
+        Integer batchedOrdinal = batchedRows.get(row);
+        if (batchedOrdinal != null && batchedOrdinal > ordinal) {
+            flushedEarly += executeBatches();
+        }
+        bind(operation).addBatch();
+        batched.merge(operation.getType(), 1, Integer::sum);
+        batchedRows.merge(row, ordinal, Math::max);
+    }
+
+    /**
+     * Executes the pending batches and returns the number of operations flushed since the last call. Batches
+     * run in {@link Operation.Type} order, so orders are always written before the items that reference them.
+     */
+    public int flush() throws SQLException {
+        int flushed = flushedEarly + executeBatches();
+        flushedEarly = 0;
+        return flushed;
+    }
+
+    private int executeBatches() throws SQLException {
+        int flushed = 0;
+        for (Map.Entry<Operation.Type, Integer> entry : batched.entrySet()) {
+            DataFeeder.executeBatchTimed(statements.get(entry.getKey()), entry.getKey().getTable(), entry.getValue());
+            flushed += entry.getValue();
+        }
+        batched.clear();
+        batchedRows.clear();
+        return flushed;
+    }
+
+    /**
+     * Drops the pending batches, for a caller that rolls back after a failed {@link #addBatch} or
+     * {@link #flush()}.
+     */
+    public void discard() throws SQLException {
+        for (Operation.Type type : batched.keySet()) {
+            statements.get(type).clearBatch();
+        }
+        batched.clear();
+        batchedRows.clear();
+        flushedEarly = 0;
+    }
+
+    /**
+     * Operations added since the last {@link #flush()}, including those already executed to keep row order.
+     */
+    public int getBatchedCount() {
+        int count = flushedEarly;
+        for (int value : batched.values()) {
+            count += value;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        for (PreparedStatement statement : statements.values()) {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary log of {@link Operation}s.
+ *
+ * <p>Layout: a header ({@code DFOP} magic, version byte, base time in epoch millis) followed by one record
+ * per operation: the type ordinal, the time delta to the previous operation and the integer columns, all
+ * as zig-zag varints. Order dates are stored as a microsecond delta to the operation time, and statuses
+ * through a small dictionary that is built up as new values appear. A typical order takes about 10 bytes,
+ * an order item about 8 and a status update about 5. Version 2 added status updates; version 1 logs are
+ * still read.
+ */
+public final class OperationLog {
+
+    private static final int MAGIC = 0x44464f50;
+    private static final byte VERSION = 2;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private OperationLog() {
+    }
+
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final List<String> statuses = new ArrayList<>();
+        private long previousTime;
+        private long lastFlush = System.currentTimeMillis();
+        private long written;
+
+        public Writer(String fileName) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(fileName)), 1 << 16));
+            this.previousTime = System.currentTimeMillis();
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(previousTime);
+        }
+
+        public synchronized void append(Operation operation) throws IOException {
+            out.writeByte(operation.getType().ordinal());
+            writeVarLong(out, operation.getTimeMillis() - previousTime);
+            previousTime = operation.getTimeMillis();
+            for (int value : operation.getValues()) {
+                writeVarLong(out, value);
+            }
+            if (operation.getType() == Operation.Type.INSERT_ORDER) {
+                writeVarLong(out, toMicros(operation.getOrderDate()) - operation.getTimeMillis() * 1000);
+                writeStatus(operation.getStatus());
+            } else if (operation.getType() == Operation.Type.UPDATE_ORDER_STATUS) {
+                writeStatus(operation.getStatus());
+            }
+            written++;
+            // Keep the log usable when the feeder is killed: never hold more than a second of operations. Wall
+            // clock, not the operation time, which is in the past for backfilled orders
+            long now = System.currentTimeMillis();
+            if (now - lastFlush >= FLUSH_INTERVAL_MS) {
+                out.flush();
+                lastFlush = now;
+            }
+        }
+
+        private void writeStatus(String status) throws IOException {
+            int index = statuses.indexOf(status);
+            if (index >= 0) {
+                out.writeByte(index);
+            } else {
+                out.writeByte(statuses.size());
+                out.writeUTF(status);
+                statuses.add(status);
+            }
+        }
+
+        public synchronized long getWritten() {
+            return written;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> statuses = new ArrayList<>();
+        private long previousTime;
+
+        public Reader(String fileName) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(fileName)), 1 << 16));
+            if (in.readInt() != MAGIC) {
+                throw new IOException(fileName + " is not an operation log");
+            }
+            byte version = in.readByte();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported operation log version " + version + " in " + fileName);
+            }
+            this.previousTime = in.readLong();
+        }
+
+        /**
+         * Returns the next operation, or {@code null} at the end of the log. A record cut short by a killed
+         * writer is treated as the end of the log.
+         */
+        public Operation next() throws IOException {
+            int typeOrdinal = in.read();
+            if (typeOrdinal < 0) {
+                return null;
+            }
+            if (typeOrdinal >= Operation.Type.values().length) {
+                throw new IOException("Unknown operation type " + typeOrdinal);
+            }
+            try {
+                Operation.Type type = Operation.Type.values()[typeOrdinal];
+                long time = previousTime + readVarLong(in);
+                previousTime = time;
+                switch (type) {
+                    case INSERT_ORDER: {
+                        int orderID = (int) readVarLong(in);
+                        int customerID = (int) readVarLong(in);
+                        LocalDateTime orderDate = fromMicros(time * 1000 + readVarLong(in));
+                        return Operation.insertOrder(time, orderID, customerID, orderDate, readStatus());
+                    }
+                    case INSERT_ORDER_ITEM:
+                        return Operation.insertOrderItem(time, (int) readVarLong(in), (int) readVarLong(in),
+                                (int) readVarLong(in), (int) readVarLong(in));
+                    case DECREMENT_STOCK:
+                        return Operation.decrementStock(time, (int) readVarLong(in), (int) readVarLong(in));
+                    case RESTOCK:
+                        return Operation.restock(time, (int) readVarLong(in), (int) readVarLong(in));
+                    case UPDATE_ORDER_STATUS: {
+                        int orderID = (int) readVarLong(in);
+                        return Operation.updateOrderStatus(time, orderID, readStatus());
+                    }
+                    default:
+                        throw new IOException("Unknown operation type " + typeOrdinal);
+                }
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        private String readStatus() throws IOException {
+            int index = in.readUnsignedByte();
+            if (index == statuses.size()) {
+                statuses.add(in.readUTF());
+            }
+            return statuses.get(index);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long zigZag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Re-executes a recorded {@link OperationLog} with batched writes.
+ *
+ * <p>{@code replay.speed} is either a factor on the recorded pace ({@code 1} replays in real time,
+ * {@code 10} ten times faster) or {@code max} to write as fast as the database accepts. Operations that
+ * are due together are sent as one batch of up to {@code replay.batch.size} statements and committed as
+ * one transaction. Recorded values, including order dates, are written unchanged.
+ */
+public class OperationReplayer {
+
+    private final Connection connection;
+    private final String fileName;
+    private final double speed;
+    private final int batchSize;
+
+    public OperationReplayer(Connection connection, Properties properties) {
+        this.connection = connection;
+        this.fileName = properties.getProperty("replay.file");
+        String speedProperty = properties.getProperty("replay.speed", "1");
+        this.speed = "max".equalsIgnoreCase(speedProperty) ? Double.POSITIVE_INFINITY : Double.parseDouble(speedProperty);
+        this.batchSize = Integer.parseInt(properties.getProperty("replay.batch.size", "500"));
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("replay.speed must be positive or 'max': " + speedProperty);
+        }
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return properties.getProperty("replay.file") != null;
+    }
+
+    public void run() throws SQLException, IOException {
+        connection.setAutoCommit(false);
+        long replayed = 0;
+        long startNanos = System.nanoTime();
+        try (OperationLog.Reader reader = new OperationLog.Reader(fileName);
+             OperationExecutor executor = new OperationExecutor(connection)) {
+            long firstTime = Long.MIN_VALUE;
+            Operation operation;
+            while ((operation = reader.next()) != null) {
+                if (firstTime == Long.MIN_VALUE) {
+                    firstTime = operation.getTimeMillis();
+                }
+                long dueNanos = startNanos + (long) ((operation.getTimeMillis() - firstTime) * 1_000_000L / speed);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    // Nothing more is due yet: send what we have before waiting
+                    replayed += flush(executor);
+                    sleepNanos(waitNanos);
+                }
+                executor.addBatch(operation);
+                if (executor.getBatchedCount() >= batchSize) {
+                    replayed += flush(executor);
+                }
+            }
+            replayed += flush(executor);
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println(String.format("Replayed %d operations from %s in %.1f s (%.0f ops/s)",
+                replayed, fileName, seconds, replayed / Math.max(seconds, 1e-9)));
+    }
+
+    private int flush(OperationExecutor executor) throws SQLException {
+        int rows = executor.getBatchedCount();
+        if (rows == 0) {
+            return 0;
+        }
+        try {
+            executor.flush();
+            DataFeeder.commitTimed(connection, rows);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        return rows;
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
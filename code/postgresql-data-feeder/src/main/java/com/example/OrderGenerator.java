@@ -0,0 +1,102 @@
+package com.example;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates new orders with 1 to 5 order items and owns the OrderID and OrderItemID sequences.
+ * Shared by the live feed and the historical backfill so both produce the same kind of data. With stock
+ * updates on, items pick their product from a Zipfian hot-product distribution and each one is followed
+ * by a DECREMENT_STOCK of its quantity, so products.Stock follows the inserted order_items.
+ */
+public class OrderGenerator {
+
+    private final int[] productIds;
+    private final Random random;
+    private int orderID;
+    private int orderItemID;
+    private String initialStatus;
+    // Hot products first, set when stock updates are on
+    private int[] hotProductIds;
+    private ZipfianGenerator hotProducts;
+
+    public OrderGenerator(int[] productIds, int firstOrderID, int firstOrderItemID, Random random) {
+        this.productIds = productIds;
+        this.orderID = firstOrderID;
+        this.orderItemID = firstOrderItemID;
+        this.random = random;
+    }
+
+    /**
+     * Gives every new order this status instead of a random "Completed" or "Pending", for orders that an
+     * {@link OrderLifecycleWorkload} moves on from there.
+     */
+    public void setInitialStatus(String initialStatus) {
+        this.initialStatus = initialStatus;
+    }
+
+    /**
+     * Takes each item's quantity off the product's stock from now on, and picks products from a Zipfian
+     * distribution with this exponent so a few hot products cross the restock threshold.
+     */
+    public void setStockUpdates(double zipfExponent) {
+        if (productIds.length == 0) {
+            throw new IllegalArgumentException("Stock updates need at least one ProductID, the product list is empty");
+        }
+        // Shuffle the ids so the hot products are not simply the lowest ProductIDs
+        int[] ids = productIds.clone();
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        this.hotProducts = new ZipfianGenerator(ids.length, zipfExponent);
+        this.hotProductIds = ids;
+    }
+
+    /**
+     * Returns the insert for the next order followed by the inserts for its items, each followed by its
+     * stock decrement when stock updates are on.
+     */
+    public List<Operation> nextOrder(long timeMillis, LocalDateTime orderDate) {
+        List<Operation> operations = new ArrayList<>(11);
+        int customerID = DataFeeder.CUSTOMER_ID_MIN + random.nextInt(DataFeeder.CUSTOMER_ID_MAX - DataFeeder.CUSTOMER_ID_MIN + 1);
+        // Drawn in both cases so the rest of the generated data does not depend on the lifecycle
+        String status = random.nextBoolean() ? "Completed" : "Pending";
+        if (initialStatus != null) {
+            status = initialStatus;
+        }
+        operations.add(Operation.insertOrder(timeMillis, orderID, customerID, orderDate, status));
+
+        int numberOfItems = 1 + random.nextInt(5); // Random number of order items between 1 and 5
+        for (int i = 0; i < numberOfItems; i++) {
+            int productID = hotProducts != null ? hotProductIds[hotProducts.next(random)] : productIds[random.nextInt(productIds.length)];
+            int quantity = 1 + random.nextInt(10);
+            operations.add(Operation.insertOrderItem(timeMillis, orderItemID++, orderID, productID, quantity));
+            if (hotProducts != null) {
+                operations.add(Operation.decrementStock(timeMillis, productID, quantity));
+            }
+        }
+        orderID++;
+        return operations;
+    }
+
+    /**
+     * Moves both sequences past ids that are already taken.
+     */
+    public void skipPast(int maxOrderID, int maxOrderItemID) {
+        orderID = Math.max(orderID, maxOrderID + 1);
+        orderItemID = Math.max(orderItemID, maxOrderItemID + 1);
+    }
+
+    public int getNextOrderID() {
+        return orderID;
+    }
+
+    public int getNextOrderItemID() {
+        return orderItemID;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Moves orders through their lifecycle with UPDATEs of orders.Status: Pending, Paid, Shipped, Completed,
+ * with cancellations from Pending and Paid. Every order waits in a status for a dwell time drawn from a
+ * configurable distribution. The orders that are due are updated together in one JDBC batch and one
+ * transaction, so the CDC stream gets a steady flow of updates to existing rows.
+ *
+ * <p>Open orders are kept in memory, ordered by the time of their next transition. The index holds at
+ * most {@code lifecycle.max.open.orders} orders (about 40 bytes each); orders created while it is full
+ * keep their initial status. On start the most recent open orders are read back from the database.
+ */
+public class OrderLifecycleWorkload implements Runnable {
+
+    static final String PENDING = "Pending";
+    static final String PAID = "Paid";
+    static final String SHIPPED = "Shipped";
+    static final String COMPLETED = "Completed";
+    static final String CANCELLED = "Cancelled";
+
+    private static final String OPEN_ORDERS_SQL = "SELECT OrderID, Status FROM orders WHERE Status IN ('"
+            + PENDING + "', '" + PAID + "', '" + SHIPPED + "') ORDER BY OrderID DESC LIMIT ?";
+
+    private static final class OpenOrder {
+        final int orderID;
+        final String status;
+        final long dueMillis;
+
+        OpenOrder(int orderID, String status, long dueMillis) {
+            this.orderID = orderID;
+            this.status = status;
+            this.dueMillis = dueMillis;
+        }
+    }
+
+    /**
+     * Time an order stays in one status: {@code fixed} at the mean, {@code uniform} up to the maximum, or
+     * {@code exponential} with the given mean, cut off at the maximum.
+     */
+    static final class DwellTime {
+        private final String distribution;
+        private final long meanMs;
+        private final long maxMs;
+
+        DwellTime(Properties properties, String status, String defaultDistribution, long defaultMeanMs) {
+            String prefix = "lifecycle." + status.toLowerCase() + ".dwell.";
+            this.distribution = properties.getProperty(prefix + "distribution", defaultDistribution);
+            this.meanMs = Long.parseLong(properties.getProperty(prefix + "mean.ms", String.valueOf(defaultMeanMs)));
+            this.maxMs = Long.parseLong(properties.getProperty(prefix + "max.ms", String.valueOf(10 * meanMs)));
+            if (!distribution.equals("fixed") && !distribution.equals("uniform") && !distribution.equals("exponential")) {
+                throw new IllegalArgumentException("Unknown dwell time distribution " + distribution + " for " + status);
+            }
+        }
+
+        long sample(Random random) {
+            switch (distribution) {
+                case "fixed":
+                    return meanMs;
+                case "uniform":
+                    return (long) (random.nextDouble() * maxMs);
+                default:
+                    return Math.min(maxMs, (long) (-meanMs * Math.log(1 - random.nextDouble())));
+            }
+        }
+    }
+
+    private final String dbUrl;
+    private final String dbUser;
+    private final String dbPassword;
+    private final Random random;
+
+    private final int maxOpenOrders;
+    private final int batchSize;
+    private final long batchIntervalMs;
+    private final boolean resume;
+    private final DwellTime pendingDwell;
+    private final DwellTime paidDwell;
+    private final DwellTime shippedDwell;
+    private final double pendingCancelRatio;
+    private final double paidCancelRatio;
+
+    private final PriorityQueue<OpenOrder> openOrders = new PriorityQueue<>(Comparator.comparingLong(order -> order.dueMillis));
+    private long untracked;
+
+    private OperationLog.Writer recorder;
+
+    public OrderLifecycleWorkload(Properties properties, Random random) {
+        this.dbUrl = properties.getProperty("db.url");
+        this.dbUser = properties.getProperty("db.user");
+        this.dbPassword = properties.getProperty("db.password");
+        this.random = random;
+        this.maxOpenOrders = Integer.parseInt(properties.getProperty("lifecycle.max.open.orders", "100000"));
+        this.batchSize = Integer.parseInt(properties.getProperty("lifecycle.batch.size", "500"));
+        this.batchIntervalMs = Long.parseLong(properties.getProperty("lifecycle.batch.interval.ms", "200"));
+        this.resume = Boolean.parseBoolean(properties.getProperty("lifecycle.resume", "true"));
+        String distribution = properties.getProperty("lifecycle.dwell.distribution", "exponential");
+        this.pendingDwell = new DwellTime(properties, PENDING, distribution, 10_000);
+        this.paidDwell = new DwellTime(properties, PAID, distribution, 30_000);
+        this.shippedDwell = new DwellTime(properties, SHIPPED, distribution, 60_000);
+        this.pendingCancelRatio = Double.parseDouble(properties.getProperty("lifecycle.pending.cancel.ratio", "0.1"));
+        this.paidCancelRatio = Double.parseDouble(properties.getProperty("lifecycle.paid.cancel.ratio", "0.03"));
+    }
+
+    public void setRecorder(OperationLog.Writer recorder) {
+        this.recorder = recorder;
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return Boolean.parseBoolean(properties.getProperty("lifecycle.enabled", "false"));
+    }
+
+    /**
+     * Starts the lifecycle of a newly inserted order, which is Pending.
+     */
+    public synchronized void track(int orderID, long timeMillis) {
+        schedule(orderID, PENDING, timeMillis);
+    }
+
+    private synchronized void schedule(int orderID, String status, long timeMillis) {
+        if (openOrders.size() >= maxOpenOrders) {
+            untracked++;
+            return;
+        }
+        DwellTime dwell = status.equals(PENDING) ? pendingDwell : status.equals(PAID) ? paidDwell : shippedDwell;
+        openOrders.add(new OpenOrder(orderID, status, timeMillis + dwell.sample(random)));
+    }
+
+    private synchronized List<OpenOrder> pollDue(long nowMillis) {
+        List<OpenOrder> due = new ArrayList<>();
+        while (due.size() < batchSize && !openOrders.isEmpty() && openOrders.peek().dueMillis <= nowMillis) {
+            due.add(openOrders.poll());
+        }
+        FeederMetrics.get().setGauge("lifecycle_open_orders", openOrders.size());
+        FeederMetrics.get().setGauge("lifecycle_untracked_orders", untracked);
+        return due;
+    }
+
+    private synchronized String nextStatus(String status) {
+        switch (status) {
+            case PENDING:
+                return random.nextDouble() < pendingCancelRatio ? CANCELLED : PAID;
+            case PAID:
+                return random.nextDouble() < paidCancelRatio ? CANCELLED : SHIPPED;
+            default:
+                return COMPLETED;
+        }
+    }
+
+    @Override
+    public void run() {
+        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
+            connection.setAutoCommit(false);
+            long transitions = 0;
+            try (OperationExecutor executor = new OperationExecutor(connection)) {
+                while (!Thread.currentThread().isInterrupted()) {
+                    long now = System.currentTimeMillis();
+                    List<OpenOrder> due = pollDue(now);
+                    List<Operation> operations = new ArrayList<>(due.size());
+                    for (OpenOrder order : due) {
+                        Operation operation = Operation.updateOrderStatus(now, order.orderID, nextStatus(order.status));
+                        operations.add(operation);
+                        executor.addBatch(operation);
+                    }
+                    if (!due.isEmpty()) {
+                        boolean committed = commit(connection, executor, operations);
+                        for (int i = 0; i < due.size(); i++) {
+                            // After a rollback the orders keep their status and wait another dwell time
+                            String status = committed ? operations.get(i).getStatus() : due.get(i).status;
+                            if (!status.equals(COMPLETED) && !status.equals(CANCELLED)) {
+                                schedule(due.get(i).orderID, status, now);
+                            }
+                        }
+                        if (committed) {
+                            long before = transitions;
+                            transitions += due.size();
+                            if (transitions / 1000 != before / 1000) {
+                                System.out.println("Order lifecycle: " + transitions + " status updates");
+                            }
+                        }
+                    }
+                    // A full batch means more orders are due: go on without waiting
+                    if (due.size() < batchSize) {
+                        Thread.sleep(batchIntervalMs);
+                    }
+                }
+            }
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes and commits the batched status updates, then records them. A failed batch or commit is rolled
+     * back and logged, and the workload goes on; only a failed rollback ends it.
+     */
+    private boolean commit(Connection connection, OperationExecutor executor, List<Operation> operations) throws SQLException, IOException {
+        int rows;
+        try {
+            rows = executor.flush();
+        } catch (SQLException e) {
+            // Already counted against orders by the batch
+            return rollback(connection, executor, operations.size(), e);
+        }
+        try {
+            DataFeeder.commitTimed(connection, rows);
+        } catch (SQLException e) {
+            FeederMetrics.get().recordError("orders");
+            return rollback(connection, executor, operations.size(), e);
+        }
+        if (recorder != null) {
+            for (Operation operation : operations) {
+                recorder.append(operation);
+            }
+        }
+        return true;
+    }
+
+    private static boolean rollback(Connection connection, OperationExecutor executor, int updates, SQLException e) throws SQLException {
+        executor.discard();
+        connection.rollback();
+        System.out.println("Order lifecycle: " + updates + " status updates rolled back, retrying later: " + e.getMessage());
+        return false;
+    }
+
+    /**
+     * Reads back the most recent open orders, when {@code lifecycle.resume} is on. Called before the
+     * workload and the live feed start, so no order is tracked twice.
+     */
+    public void loadOpenOrders(Connection connection) throws SQLException {
+        if (!resume) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        try (PreparedStatement statement = connection.prepareStatement(OPEN_ORDERS_SQL)) {
+            statement.setInt(1, maxOpenOrders);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    schedule(resultSet.getInt(1), resultSet.getString(2), now);
+                    loaded++;
+                }
+            }
+        }
+        System.out.println("Order lifecycle: resumed " + loaded + " open orders");
+    }
+}
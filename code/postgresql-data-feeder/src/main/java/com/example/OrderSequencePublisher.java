@@ -0,0 +1,47 @@
+package com.example;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Properties;
+
+/**
+ * Appends every OrderID the feeder creates, with its OrderDate, to a local sequence file
+ * ({@code orderId,epochMillis} per line). The payments generator tails the same file to attach
+ * payments to real orders, which gives the Usecase3 interval join a known selectivity.
+ */
+public class OrderSequencePublisher implements Closeable {
+
+    private final BufferedWriter writer;
+
+    public OrderSequencePublisher(String fileName) throws IOException {
+        // Start every run with an empty file so the payments side never sees stale orders
+        this.writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8);
+    }
+
+    public static OrderSequencePublisher fromProperties(Properties properties) throws IOException {
+        String fileName = properties.getProperty("join.sequence.file");
+        return fileName == null ? null : new OrderSequencePublisher(fileName);
+    }
+
+    /**
+     * Publishes an order with its OrderDate, a wall-clock time of the feeder's time zone like
+     * {@code LocalDateTime.now()}, as real epoch millis. The payments generator schedules against
+     * {@code System.currentTimeMillis()}, so the payment ts stays close to real time in every zone.
+     */
+    public synchronized void publish(int orderID, LocalDateTime orderDate) throws IOException {
+        writer.write(orderID + "," + orderDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        writer.newLine();
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example;
+
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts the continuous insert rate to the CDC replication lag. A background thread samples the retained
+ * WAL of the logical replication slots ({@code pg_replication_slots}) and the walsender lag
+ * ({@code pg_stat_replication}) every {@code backpressure.sample.interval.ms}. When either exceeds its
+ * configured maximum the pause between orders doubles; while both stay under half of their maximum it
+ * shrinks by 10%, but never below the pause of the live {@code feeder.orders.per.second}. The rate the
+ * throttle settles at is therefore the configured rate, or the highest the connector drains without the
+ * lag growing when that is lower. Lag and rate are exported as {@link FeederMetrics} gauges.
+ */
+public class ReplicationLagThrottle implements AutoCloseable {
+
+    private static final String SLOT_LAG_SQL = "SELECT COALESCE(MAX(pg_wal_lsn_diff(pg_current_wal_lsn(), confirmed_flush_lsn)), 0) "
+            + "FROM pg_replication_slots WHERE slot_type = 'logical'";
+    private static final String REPLICATION_LAG_SQL = "SELECT COALESCE(MAX(EXTRACT(EPOCH FROM GREATEST(write_lag, flush_lag, replay_lag))), 0) "
+            + "FROM pg_stat_replication";
+
+    private final String dbUrl;
+    private final String dbUser;
+    private final String dbPassword;
+    private final long maxLagBytes;
+    private final double maxLagSeconds;
+    private final long sampleIntervalMs;
+    private final double minIntervalMs;
+    private final double maxIntervalMs;
+    private final WorkloadConfig workload;
+
+    private volatile double intervalMs;
+    private ScheduledExecutorService sampler;
+    private Connection connection;
+
+    public ReplicationLagThrottle(Properties properties, WorkloadConfig workload) {
+        this.dbUrl = properties.getProperty("db.url");
+        this.dbUser = properties.getProperty("db.user");
+        this.dbPassword = properties.getProperty("db.password");
+        this.maxLagBytes = Long.parseLong(properties.getProperty("backpressure.max.lag.bytes", String.valueOf(64L * 1024 * 1024)));
+        this.maxLagSeconds = Double.parseDouble(properties.getProperty("backpressure.max.lag.seconds", "30"));
+        this.sampleIntervalMs = Long.parseLong(properties.getProperty("backpressure.sample.interval.ms", "5000"));
+        this.minIntervalMs = Double.parseDouble(properties.getProperty("backpressure.min.interval.ms", "1"));
+        this.maxIntervalMs = Double.parseDouble(properties.getProperty("backpressure.max.interval.ms", "10000"));
+        this.workload = workload;
+        this.intervalMs = Math.max(floorIntervalMs(), Math.min(maxIntervalMs, ContinuousFeeder.configuredIntervalMs(workload)));
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return Boolean.parseBoolean(properties.getProperty("backpressure.enabled", "false"));
+    }
+
+    public void start() throws SQLException {
+        connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replication-lag-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleWithFixedDelay(this::sample, 0, sampleIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void sample() {
+        try {
+            long lagBytes = queryLong(SLOT_LAG_SQL);
+            double lagSeconds = queryDouble(REPLICATION_LAG_SQL);
+            FeederMetrics.get().setGauge("replication_lag_bytes", lagBytes);
+            FeederMetrics.get().setGauge("replication_lag_seconds", lagSeconds);
+            adjust(lagBytes, lagSeconds);
+        } catch (SQLException e) {
+            FeederMetrics.get().recordError("pg_replication_slots");
+            System.out.println("Could not sample replication lag, keeping the current rate: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shortest pause the throttle allows: that of the configured rate, so the interval does not keep falling
+     * below what the feeder uses and a lag spike slows the feeder at the first doubling.
+     */
+    private double floorIntervalMs() {
+        return Math.max(minIntervalMs, ContinuousFeeder.configuredIntervalMs(workload));
+    }
+
+    void adjust(long lagBytes, double lagSeconds) {
+        double previous = intervalMs;
+        double floor = floorIntervalMs();
+        if (lagBytes > maxLagBytes || lagSeconds > maxLagSeconds) {
+            intervalMs = Math.max(floor, Math.min(maxIntervalMs, intervalMs * 2));
+        } else if (lagBytes < maxLagBytes / 2 && lagSeconds < maxLagSeconds / 2) {
+            intervalMs = Math.max(floor, intervalMs * 0.9);
+        } else {
+            intervalMs = Math.max(floor, intervalMs);
+        }
+        if (intervalMs != previous) {
+            System.out.println(String.format("Replication lag %d bytes / %.1f s: insert rate %.1f -> %.1f orders/s",
+                    lagBytes, lagSeconds, 1000 / previous, getOrdersPerSecond()));
+        }
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    private double queryDouble(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getDouble(1) : 0;
+        }
+    }
+
+    public double getOrdersPerSecond() {
+        return 1000 / intervalMs;
+    }
+
+    /**
+     * The current pause between two orders.
+     */
+    public double getIntervalMs() {
+        return intervalMs;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Workload settings that can change while the application runs. Values come from the startup properties,
+ * overridden by the properties file named in {@code workload.config.file}, which is checked for changes every
+ * {@code workload.config.poll.ms} (default 1000). Every changed value is logged. Readers get a consistent
+ * snapshot on each call, so they pick up new values on their next iteration without any restart.
+ */
+public class WorkloadConfig {
+
+    private final Map<String, String> defaults;
+    private final Path file;
+    private volatile Map<String, String> values;
+    private long lastModified = -1;
+    private ScheduledExecutorService watcher;
+
+    public WorkloadConfig(Properties defaults) {
+        this.defaults = toMap(defaults);
+        String fileName = defaults.getProperty("workload.config.file");
+        this.file = fileName != null ? Paths.get(fileName) : null;
+        this.values = this.defaults;
+        reload();
+    }
+
+    private static Map<String, String> toMap(Properties properties) {
+        Map<String, String> map = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            map.put(name, properties.getProperty(name));
+        }
+        return map;
+    }
+
+    /**
+     * Starts watching the workload file, if there is one.
+     */
+    public synchronized void start() {
+        if (file == null || watcher != null) {
+            return;
+        }
+        long pollMs = Long.parseLong(defaults.getOrDefault("workload.config.poll.ms", "1000"));
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "workload-config-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reload, pollMs, pollMs, TimeUnit.MILLISECONDS);
+        System.out.println("Watching " + file + " for workload changes");
+    }
+
+    synchronized void reload() {
+        if (file == null) {
+            return;
+        }
+        Properties overrides = new Properties();
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == lastModified) {
+                return;
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                overrides.load(in);
+            }
+            lastModified = modified;
+        } catch (NoSuchFileException e) {
+            if (lastModified == 0) {
+                return;
+            }
+            // A removed file falls back to the startup values
+            lastModified = 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Keeping the current workload, cannot read " + file + ": " + e.getMessage());
+            return;
+        }
+
+        Map<String, String> updated = new HashMap<>(defaults);
+        updated.putAll(toMap(overrides));
+        Set<String> names = new TreeSet<>(updated.keySet());
+        names.addAll(values.keySet());
+        for (String name : names) {
+            String before = values.get(name);
+            String after = updated.get(name);
+            if (!Objects.equals(before, after)) {
+                System.out.println("Workload " + name + ": " + before + " -> " + after);
+            }
+        }
+        values = updated;
+    }
+
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        try {
+            return value != null ? Double.parseDouble(value.trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        try {
+            return value != null ? Long.parseLong(value.trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return (int) getLong(name, defaultValue);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example;
+
+import java.util.Random;
+
+/**
+ * Draws indexes in [0, n) following a Zipfian distribution, so that index 0 is the hottest item,
+ * index 1 the second hottest and so on. Based on the rejection-free method from Gray et al.,
+ * "Quickly Generating Billion-Record Synthetic Databases": the zeta constant is computed once
+ * and each draw then costs O(1).
+ */
+public class ZipfianGenerator {
+
+    private final int items;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+    private final double halfPowTheta;
+
+    public ZipfianGenerator(int items, double theta) {
+        if (items < 1) {
+            throw new IllegalArgumentException("Zipfian generator needs at least one item");
+        }
+        if (theta <= 0 || theta == 1.0) {
+            throw new IllegalArgumentException("Zipfian exponent must be positive and different from 1: " + theta);
+        }
+        this.items = items;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetaN = zeta(items, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+        this.halfPowTheta = 1 + Math.pow(0.5, theta);
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    public int next(Random random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < halfPowTheta) {
+            return Math.min(1, items - 1);
+        }
+        int index = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(index, items - 1);
+    }
+
+    public int getItems() {
+        return items;
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+}
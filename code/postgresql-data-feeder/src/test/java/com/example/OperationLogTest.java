@@ -0,0 +1,110 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OperationLogTest {
+
+    private static final long BASE_TIME = 1_700_000_000_000L;
+    private static final LocalDateTime ORDER_DATE = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatVersion2Writes() throws IOException {
+        List<Operation> operations = Arrays.asList(
+                Operation.insertOrder(BASE_TIME, 3001, 42, ORDER_DATE, "Pending"),
+                Operation.insertOrderItem(BASE_TIME + 1, 9001, 3001, 7, 2),
+                Operation.decrementStock(BASE_TIME + 5, 7, 2),
+                Operation.restock(BASE_TIME + 5, 7, 100),
+                Operation.updateOrderStatus(BASE_TIME + 900, 3001, "Paid"),
+                // Backfilled orders go back in time
+                Operation.insertOrder(BASE_TIME - 86_400_000L, 3002, 43, ORDER_DATE.minusDays(1), "Pending"),
+                Operation.updateOrderStatus(BASE_TIME + 1000, 3002, "Paid"));
+        String file = directory.resolve("v2.log").toString();
+        try (OperationLog.Writer writer = new OperationLog.Writer(file)) {
+            for (Operation operation : operations) {
+                writer.append(operation);
+            }
+        }
+
+        assertEquals(toStrings(operations), toStrings(readAll(file)));
+    }
+
+    @Test
+    void readsVersion1Logs() throws IOException {
+        // Version 1 had no status updates; its records are laid out like those of version 2
+        Path file = directory.resolve("v1.log");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x44464f50);
+            out.writeByte(1);
+            out.writeLong(BASE_TIME);
+            out.writeByte(Operation.Type.INSERT_ORDER.ordinal());
+            OperationLog.writeVarLong(out, 0);
+            OperationLog.writeVarLong(out, 3001);
+            OperationLog.writeVarLong(out, 42);
+            OperationLog.writeVarLong(out, -30_000_000L);
+            out.writeByte(0);
+            out.writeUTF("Completed");
+            out.writeByte(Operation.Type.INSERT_ORDER_ITEM.ordinal());
+            OperationLog.writeVarLong(out, 2);
+            for (int value : new int[]{9001, 3001, 7, 2}) {
+                OperationLog.writeVarLong(out, value);
+            }
+            out.writeByte(Operation.Type.DECREMENT_STOCK.ordinal());
+            OperationLog.writeVarLong(out, 3);
+            OperationLog.writeVarLong(out, 7);
+            OperationLog.writeVarLong(out, 2);
+        }
+
+        LocalDateTime orderDate = LocalDateTime.of(2023, 11, 14, 22, 12, 50);
+        assertEquals(toStrings(Arrays.asList(
+                        Operation.insertOrder(BASE_TIME, 3001, 42, orderDate, "Completed"),
+                        Operation.insertOrderItem(BASE_TIME + 2, 9001, 3001, 7, 2),
+                        Operation.decrementStock(BASE_TIME + 5, 7, 2))),
+                toStrings(readAll(file.toString())));
+    }
+
+    @Test
+    void rejectsNewerVersions() throws IOException {
+        Path file = directory.resolve("v9.log");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x44464f50);
+            out.writeByte(9);
+            out.writeLong(BASE_TIME);
+        }
+
+        assertThrows(IOException.class, () -> new OperationLog.Reader(file.toString()));
+    }
+
+    private static List<Operation> readAll(String file) throws IOException {
+        List<Operation> operations = new ArrayList<>();
+        try (OperationLog.Reader reader = new OperationLog.Reader(file)) {
+            Operation operation;
+            while ((operation = reader.next()) != null) {
+                operations.add(operation);
+            }
+        }
+        return operations;
+    }
+
+    private static List<String> toStrings(List<Operation> operations) {
+        List<String> strings = new ArrayList<>();
+        for (Operation operation : operations) {
+            strings.add(operation.toString());
+        }
+        return strings;
+    }
+}